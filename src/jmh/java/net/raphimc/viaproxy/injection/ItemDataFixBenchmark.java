@@ -0,0 +1,147 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.injection;
+
+import com.viaversion.viaversion.api.minecraft.data.StructuredDataContainer;
+import com.viaversion.viaversion.api.minecraft.item.data.ToolProperties;
+import com.viaversion.viaversion.api.minecraft.item.data.ToolRule;
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.vialegacy.api.LegacyProtocolVersion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures translating a full player inventory (46 slots) with the {@link ItemDataFix} tables against computing the fix of each item on every translation, which is what the 1.20.5 item rewriter did before the tables.<br>
+ * The item registry has the size of the 1.20.5 one and contains the items which get fixes, the remaining ids are filled with other items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemDataFixBenchmark {
+
+    private static final int ITEM_COUNT = 1333; // 1.20.5
+    private static final String[] TOOLS = {"sword", "pickaxe", "axe", "shovel", "hoe"};
+    private static final String[] TOOL_MATERIALS = {"wooden", "stone", "iron", "golden", "diamond", "netherite"};
+    private static final String[] ARMOR = {"helmet", "chestplate", "leggings", "boots"};
+    private static final String[] ARMOR_MATERIALS = {"leather", "chainmail", "iron", "golden", "diamond"};
+    private static final String[] FOOD = {"apple", "mushroom_stew", "bread", "porkchop", "cooked_porkchop", "golden_apple", "cod", "cooked_cod", "cookie"};
+
+    @Param({"b1.7.3", "1.8", "1.20.3"})
+    public String serverVersion;
+
+    private ProtocolVersion version;
+    private final ItemDataFixes itemDataFixes = new ItemDataFixes();
+    private final String[] identifiers = new String[ITEM_COUNT];
+    private final int[] inventory = new int[46];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.version = switch (this.serverVersion) {
+            case "b1.7.3" -> LegacyProtocolVersion.b1_7tob1_7_3;
+            case "1.8" -> ProtocolVersion.v1_8;
+            case "1.20.3" -> ProtocolVersion.v1_20_3;
+            default -> throw new IllegalArgumentException(this.serverVersion);
+        };
+
+        final List<String> tools = new ArrayList<>();
+        for (String material : TOOL_MATERIALS) {
+            for (String tool : TOOLS) {
+                tools.add("minecraft:" + material + "_" + tool);
+            }
+        }
+        final List<String> armor = new ArrayList<>();
+        for (String material : ARMOR_MATERIALS) {
+            for (String piece : ARMOR) {
+                armor.add("minecraft:" + material + "_" + piece);
+            }
+        }
+
+        // Same data as MixinBlockItemPacketRewriter1_20_5, the tool properties stand in for the ones from item-tool-components.bin
+        for (String food : FOOD) {
+            this.itemDataFixes.addFoodItem_b1_7_3("minecraft:" + food);
+        }
+        for (String piece : armor) {
+            this.itemDataFixes.addArmorMaxDamage_b1_8_1(piece, 100);
+        }
+        for (int i = 0; i < 5; i++) {
+            this.itemDataFixes.addSwordItem1_8(tools.get(i * TOOLS.length));
+        }
+        for (ProtocolVersion untilVersion : new ProtocolVersion[]{ProtocolVersion.v1_8, ProtocolVersion.v1_12_2, ProtocolVersion.v1_16_4}) {
+            final Map<String, ToolProperties> toolProperties = new HashMap<>();
+            for (String tool : tools) {
+                toolProperties.put(tool, new ToolProperties(new ToolRule[0], 1F, 1));
+            }
+            this.itemDataFixes.addToolData(untilVersion, toolProperties);
+        }
+
+        final List<String> fixedItems = new ArrayList<>(tools);
+        fixedItems.addAll(armor);
+        for (String food : FOOD) {
+            fixedItems.add("minecraft:" + food);
+        }
+        fixedItems.add("minecraft:crossbow");
+        for (int id = 0; id < ITEM_COUNT; id++) {
+            this.identifiers[id] = id < fixedItems.size() ? fixedItems.get(id) : "minecraft:item_" + id;
+        }
+
+        // Hotbar with tools, food and a crossbow, worn armor and the remaining slots filled with blocks and other items
+        for (int slot = 0; slot < this.inventory.length; slot++) {
+            this.inventory[slot] = slot < 9 ? slot * 3 : slot < 13 ? tools.size() + (slot - 9) : slot < 17 ? tools.size() + armor.size() + (slot - 13) : 100 + slot * 17;
+        }
+        this.inventory[8] = fixedItems.indexOf("minecraft:crossbow");
+        this.itemDataFixes.getTable(this.version, id -> this.identifiers[id], ITEM_COUNT);
+    }
+
+    @Benchmark
+    public void perItem(final Blackhole blackhole) {
+        for (int id : this.inventory) {
+            final StructuredDataContainer data = new StructuredDataContainer();
+            this.itemDataFixes.create(this.version, this.identifiers[id]).apply(data);
+            blackhole.consume(data);
+        }
+    }
+
+    @Benchmark
+    public void table(final Blackhole blackhole) {
+        final ItemDataFix[] table = this.itemDataFixes.getTable(this.version, id -> this.identifiers[id], ITEM_COUNT);
+        for (int id : this.inventory) {
+            final StructuredDataContainer data = new StructuredDataContainer();
+            final ItemDataFix itemDataFix = table[id];
+            if (itemDataFix != null) {
+                itemDataFix.apply(data);
+            }
+            blackhole.consume(data);
+        }
+    }
+
+    @Benchmark
+    public ItemDataFix[] buildTable() {
+        this.itemDataFixes.addSwordItem1_8("minecraft:wooden_sword"); // Drops the cached tables
+        return this.itemDataFixes.getTable(this.version, id -> this.identifiers[id], ITEM_COUNT);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.protocoltranslator.impl;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import com.viaversion.viaversion.libs.gson.JsonElement;
+import com.viaversion.viaversion.libs.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the mapping data files compiled by the compileMappingData gradle task against parsing their JSON sources, which is what ViaProxy did before.<br>
+ * Both paths read the file from the classpath and build the same data. The tool components aren't resolved to block ids, because that part is the same for both formats and needs the ViaVersion mappings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingDataLoadBenchmark {
+
+    private final ViaProxyMappingDataLoader loader = ViaProxyMappingDataLoader.INSTANCE;
+
+    @Benchmark
+    public void materialsJson(final Blackhole blackhole) {
+        final Map<String, ViaProxyMappingDataLoader.Material> materials = new HashMap<>();
+        final Map<String, Map<ProtocolVersion, String>> blockMaterials = new HashMap<>();
+        final Map<String, List<ViaProxyMappingDataLoader.MaterialBlock>> materialBlocks = new HashMap<>();
+
+        final JsonObject materialsData = this.loader.loadData("materials-1.19.4.json");
+        for (Map.Entry<String, JsonElement> entry : materialsData.getAsJsonObject("materials").entrySet()) {
+            final JsonObject materialData = entry.getValue().getAsJsonObject();
+            materials.put(entry.getKey(), new ViaProxyMappingDataLoader.Material(
+                    materialData.get("blocksMovement").getAsBoolean(),
+                    materialData.get("burnable").getAsBoolean(),
+                    materialData.get("liquid").getAsBoolean(),
+                    materialData.get("blocksLight").getAsBoolean(),
+                    materialData.get("replaceable").getAsBoolean(),
+                    materialData.get("solid").getAsBoolean()
+            ));
+        }
+        for (Map.Entry<String, JsonElement> blockEntry : materialsData.getAsJsonObject("blocks").entrySet()) {
+            final Map<ProtocolVersion, String> versionMaterials = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : blockEntry.getValue().getAsJsonObject().entrySet()) {
+                final ProtocolVersion version = ProtocolVersion.getClosest(entry.getKey());
+                final String material = entry.getValue().getAsString();
+                versionMaterials.put(version, material);
+                materialBlocks.computeIfAbsent(material, k -> new ArrayList<>()).add(new ViaProxyMappingDataLoader.MaterialBlock(blockEntry.getKey(), version));
+            }
+            blockMaterials.put(blockEntry.getKey(), versionMaterials);
+        }
+
+        blackhole.consume(materials);
+        blackhole.consume(blockMaterials);
+        blackhole.consume(materialBlocks);
+    }
+
+    @Benchmark
+    public void materialsBinary(final Blackhole blackhole) {
+        final Map<String, ViaProxyMappingDataLoader.Material> materials = new HashMap<>();
+        final Map<String, Map<ProtocolVersion, String>> blockMaterials = new HashMap<>();
+        final Map<String, List<ViaProxyMappingDataLoader.MaterialBlock>> materialBlocks = new HashMap<>();
+
+        ViaProxyMappingDataLoader.readMaterials(this.loader.loadBinaryData("materials-1.19.4.bin"), materials, blockMaterials, materialBlocks);
+
+        blackhole.consume(materials);
+        blackhole.consume(blockMaterials);
+        blackhole.consume(materialBlocks);
+    }
+
+    @Benchmark
+    public void toolComponentsJson(final Blackhole blackhole) {
+        final JsonObject itemToolComponents = this.loader.loadData("item-tool-components.json");
+        for (Map.Entry<String, JsonElement> entry : itemToolComponents.entrySet()) {
+            blackhole.consume(ProtocolVersion.getClosest(entry.getKey()));
+            for (JsonElement toolComponent : entry.getValue().getAsJsonArray()) {
+                final JsonObject toolComponentObject = toolComponent.getAsJsonObject();
+                blackhole.consume(toolComponentObject.get("item").getAsString());
+                blackhole.consume(toolComponentObject.get("default_mining_speed").getAsFloat());
+                blackhole.consume(toolComponentObject.get("damage_per_block").getAsInt());
+                for (JsonElement block : toolComponentObject.getAsJsonArray("suitable_for")) {
+                    blackhole.consume(block.getAsString());
+                }
+                for (JsonElement miningSpeed : toolComponentObject.getAsJsonArray("mining_speeds")) {
+                    final JsonObject miningSpeedObject = miningSpeed.getAsJsonObject();
+                    for (JsonElement block : miningSpeedObject.getAsJsonArray("blocks")) {
+                        blackhole.consume(block.getAsString());
+                    }
+                    blackhole.consume(miningSpeedObject.get("speed").getAsFloat());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void toolComponentsBinary(final Blackhole blackhole) {
+        final ViaProxyMappingDataLoader.BinaryData itemToolComponents = this.loader.loadBinaryData("item-tool-components.bin");
+        final int versionCount = itemToolComponents.readInt();
+        for (int i = 0; i < versionCount; i++) {
+            blackhole.consume(ProtocolVersion.getClosest(itemToolComponents.readString()));
+            final int toolComponentCount = itemToolComponents.readInt();
+            for (int j = 0; j < toolComponentCount; j++) {
+                blackhole.consume(itemToolComponents.readString());
+                blackhole.consume(itemToolComponents.readFloat());
+                blackhole.consume(itemToolComponents.readInt());
+                blackhole.consume(itemToolComponents.readStringArray());
+                final int miningSpeedCount = itemToolComponents.readInt();
+                for (int k = 0; k < miningSpeedCount; k++) {
+                    blackhole.consume(itemToolComponents.readStringArray());
+                    blackhole.consume(itemToolComponents.readFloat());
+                }
+            }
+        }
+    }
+
+}
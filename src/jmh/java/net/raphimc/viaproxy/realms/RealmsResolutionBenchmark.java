@@ -0,0 +1,86 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the {@link RealmsResolver} takes to resolve a realm address against the {@link RealmsApiFixture}.<br>
+ * A cold resolution loads the availability and the world list and joins the realm, a warm one is answered from the caches.
+ * The latency is the time the fixture takes to answer each request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RealmsResolutionBenchmark {
+
+    private static final ProtocolVersion VERSION = ProtocolVersion.v1_20_5;
+
+    @Param({"0", "50"})
+    public long latencyMillis;
+
+    @Param({"1", "25"})
+    public int worldCount;
+
+    private RealmsApiFixture fixture;
+    private RealmsApiFixture.FixtureAccount account;
+
+    @Setup(Level.Trial)
+    public void startFixture() throws Exception {
+        this.fixture = new RealmsApiFixture().setLatency(this.latencyMillis);
+        for (int i = 0; i < this.worldCount; i++) {
+            this.fixture.addWorld(1000 + i, "Owner" + i, "World " + i, "127.0.0.1:" + (25000 + i));
+        }
+        this.fixture.install();
+        this.account = RealmsApiFixture.createAccount("Player");
+        RealmsResolver.start(this.account, VERSION, "Owner0");
+        RealmsResolver.getAddress().get(30, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopFixture() {
+        RealmsResolver.stop();
+        this.fixture.close();
+    }
+
+    @Benchmark
+    public SocketAddress coldResolve() throws Exception {
+        RealmsResolver.stop();
+        RealmsDirectory.invalidateAll();
+        RealmsResolver.start(this.account, VERSION, "Owner0");
+        return RealmsResolver.getAddress().get(30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public SocketAddress warmResolve() throws Exception {
+        return RealmsResolver.getAddress().get(30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public SocketAddress warmResolveBySelector() throws Exception {
+        return RealmsResolver.resolve("world-" + (this.worldCount - 1)).get(30, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.saves.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import net.raphimc.minecraftauth.step.bedrock.StepMCChain;
+import net.raphimc.minecraftauth.step.bedrock.StepPlayFabToken;
+import net.raphimc.minecraftauth.step.bedrock.session.StepFullBedrockSession;
+import net.raphimc.minecraftauth.step.java.StepMCProfile;
+import net.raphimc.minecraftauth.step.java.StepMCToken;
+import net.raphimc.minecraftauth.step.java.StepPlayerCertificates;
+import net.raphimc.minecraftauth.step.java.session.StepFullJavaSession;
+import net.raphimc.minecraftauth.step.msa.MsaCodeStep;
+import net.raphimc.minecraftauth.step.msa.StepMsaToken;
+import net.raphimc.minecraftauth.step.xbl.StepXblDeviceToken;
+import net.raphimc.minecraftauth.step.xbl.StepXblSisuAuthentication;
+import net.raphimc.minecraftauth.step.xbl.StepXblXstsToken;
+import net.raphimc.minecraftauth.step.xbl.adapter.StepXblXstsToFullXblSession;
+import net.raphimc.minecraftauth.step.xbl.session.StepFullXblSession;
+import net.raphimc.minecraftauth.step.xbl.session.StepInitialXblSession;
+import net.raphimc.minecraftauth.util.MicrosoftConstants;
+import net.raphimc.minecraftauth.util.OAuthEnvironment;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
+import net.raphimc.viaproxy.saves.impl.accounts.BedrockAccount;
+import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Constructor;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a save with many Microsoft and Bedrock accounts and showing the account list.<br>
+ * eager parses every session like the account constructors did before the sessions were parsed lazily, lazy only parses the sessions which are used.
+ * The save is written by {@link AccountsSaveV3#save()} from generated sessions with realistic token sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsSaveLoadBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    @Param("1000")
+    public int accounts;
+
+    private String saveFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+        final KeyPair ecKeyPair = ecGenerator.generateKeyPair();
+        final KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        final KeyPair rsaKeyPair = rsaGenerator.generateKeyPair();
+
+        final Random random = new Random(0);
+        final AccountsSaveV3 save = new AccountsSaveV3();
+        for (int i = 0; i < this.accounts; i++) {
+            final UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            final String name = "Player" + i;
+            if (i % 2 == 0) {
+                save.addAccount(new MicrosoftAccount(javaSession(random, uuid, name, ecKeyPair, rsaKeyPair)));
+            } else {
+                save.addAccount(new BedrockAccount(bedrockSession(random, uuid, name, ecKeyPair)));
+            }
+        }
+        this.saveFile = GSON.toJson(save.save());
+    }
+
+    @Benchmark
+    public void eager(final Blackhole blackhole) throws Exception {
+        for (Account account : this.load().getAccounts()) {
+            if (account instanceof MicrosoftAccount microsoftAccount) {
+                blackhole.consume(microsoftAccount.getMcProfile());
+            } else if (account instanceof BedrockAccount bedrockAccount) {
+                blackhole.consume(bedrockAccount.getMcChain());
+            }
+            blackhole.consume(account.getDisplayString());
+        }
+    }
+
+    @Benchmark
+    public void lazy(final Blackhole blackhole) throws Exception {
+        for (Account account : this.load().getAccounts()) {
+            blackhole.consume(account.getDisplayString());
+        }
+    }
+
+    /**
+     * Loading the save and logging in with one of the accounts.
+     */
+    @Benchmark
+    public Object lazyFirstLogin() throws Exception {
+        final MicrosoftAccount account = (MicrosoftAccount) this.load().getAccounts().get(0);
+        return account.getPlayerCertificates();
+    }
+
+    private AccountsSaveV3 load() throws Exception {
+        final AccountsSaveV3 save = new AccountsSaveV3();
+        save.load(GSON.fromJson(this.saveFile, JsonElement.class));
+        return save;
+    }
+
+    private static StepFullJavaSession.FullJavaSession javaSession(final Random random, final UUID uuid, final String name, final KeyPair ecKeyPair, final KeyPair rsaKeyPair) {
+        final StepXblSisuAuthentication.XblSisuTokens sisuTokens = sisuTokens(random, MicrosoftConstants.JAVA_TITLE_ID, ecKeyPair);
+        final StepMCToken.MCToken mcToken = new StepMCToken.MCToken(token(random, 700), "Bearer", expireTime(), sisuTokens);
+        final StepMCProfile.MCProfile mcProfile = new StepMCProfile.MCProfile(uuid, name, "https://textures.minecraft.net/texture/" + token(random, 64), mcToken);
+        final StepPlayerCertificates.PlayerCertificates playerCertificates = new StepPlayerCertificates.PlayerCertificates(expireTime(), (RSAPublicKey) rsaKeyPair.getPublic(), (RSAPrivateKey) rsaKeyPair.getPrivate(), bytes(random, 512), bytes(random, 256), mcToken);
+        return new StepFullJavaSession.FullJavaSession(mcProfile, playerCertificates);
+    }
+
+    private static StepFullBedrockSession.FullBedrockSession bedrockSession(final Random random, final UUID uuid, final String name, final KeyPair ecKeyPair) throws ReflectiveOperationException {
+        final StepXblSisuAuthentication.XblSisuTokens sisuTokens = sisuTokens(random, MicrosoftConstants.BEDROCK_ANDROID_TITLE_ID, ecKeyPair);
+        final StepMCChain.MCChain mcChain = new StepMCChain.MCChain((ECPublicKey) ecKeyPair.getPublic(), (ECPrivateKey) ecKeyPair.getPrivate(), token(random, 1100), token(random, 1300), String.valueOf(random.nextLong() & Long.MAX_VALUE), uuid, name, sisuTokens);
+        final StepFullXblSession.FullXblSession fullXblSession = fullXblSession(sisuTokens);
+        final StepXblXstsToken.XblXstsToken playFabXsts = new StepXblXstsToken.XblXstsToken(expireTime(), token(random, 1400), token(random, 20), fullXblSession);
+        final StepPlayFabToken.PlayFabToken playFabToken = new StepPlayFabToken.PlayFabToken(expireTime(), token(random, 300), token(random, 16), token(random, 200), token(random, 16), playFabXsts);
+        final StepXblXstsToken.XblXstsToken realmsXsts = new StepXblXstsToken.XblXstsToken(expireTime(), token(random, 1400), token(random, 20), fullXblSession);
+        return new StepFullBedrockSession.FullBedrockSession(mcChain, playFabToken, realmsXsts);
+    }
+
+    /**
+     * The Bedrock login derives the full Xbox Live session from the SISU tokens with a wrapper which MinecraftAuth doesn't expose.
+     */
+    private static StepFullXblSession.FullXblSession fullXblSession(final StepXblXstsToken.XblXsts<?> xblXsts) throws ReflectiveOperationException {
+        final Constructor<?> constructor = Class.forName(StepXblXstsToFullXblSession.class.getName() + "$FullXblSessionWrapper").getDeclaredConstructor(StepXblXstsToken.XblXsts.class);
+        constructor.setAccessible(true);
+        return (StepFullXblSession.FullXblSession) constructor.newInstance(xblXsts);
+    }
+
+    private static StepXblSisuAuthentication.XblSisuTokens sisuTokens(final Random random, final String clientId, final KeyPair ecKeyPair) {
+        final MsaCodeStep.ApplicationDetails applicationDetails = new MsaCodeStep.ApplicationDetails(clientId, MicrosoftConstants.SCOPE_TITLE_AUTH, null, null, OAuthEnvironment.LIVE);
+        final StepMsaToken.MsaToken msaToken = new StepMsaToken.MsaToken(expireTime(), token(random, 1500), token(random, 450), null, new MsaCodeStep.MsaCode(token(random, 40), applicationDetails));
+        final StepXblDeviceToken.XblDeviceToken deviceToken = new StepXblDeviceToken.XblDeviceToken((ECPublicKey) ecKeyPair.getPublic(), (ECPrivateKey) ecKeyPair.getPrivate(), new UUID(random.nextLong(), random.nextLong()), expireTime(), token(random, 1000), token(random, 40));
+        final StepInitialXblSession.InitialXblSession initialXblSession = new StepInitialXblSession.InitialXblSession(msaToken, deviceToken);
+        final String userHash = token(random, 20);
+        return new StepXblSisuAuthentication.XblSisuTokens(
+                new StepXblSisuAuthentication.XblSisuTokens.SisuTitleToken(expireTime(), token(random, 1000), token(random, 10)),
+                new StepXblSisuAuthentication.XblSisuTokens.SisuUserToken(expireTime(), token(random, 1000), userHash),
+                new StepXblSisuAuthentication.XblSisuTokens.SisuXstsToken(expireTime(), token(random, 1400), userHash),
+                initialXblSession
+        );
+    }
+
+    private static long expireTime() {
+        return System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+    }
+
+    private static String token(final Random random, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] bytes(final Random random, final int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
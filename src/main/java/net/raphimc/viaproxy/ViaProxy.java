@@ -36,7 +36,9 @@ import net.lenni0451.reflect.JavaBypass;
 import net.lenni0451.reflect.Methods;
 import net.raphimc.netminecraft.constants.MCPipeline;
 import net.raphimc.netminecraft.netty.connection.NetServer;
+import net.raphimc.viabedrock.api.BedrockProtocolVersion;
 import net.raphimc.viaproxy.cli.ConsoleHandler;
+import net.raphimc.viaproxy.injection.CachingTransformerManager;
 import net.raphimc.viaproxy.plugins.PluginManager;
 import net.raphimc.viaproxy.plugins.events.Client2ProxyHandlerCreationEvent;
 import net.raphimc.viaproxy.plugins.events.ProxyStartEvent;
@@ -46,13 +48,21 @@ import net.raphimc.viaproxy.protocoltranslator.ProtocolTranslator;
 import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 import net.raphimc.viaproxy.proxy.client2proxy.Client2ProxyChannelInitializer;
 import net.raphimc.viaproxy.proxy.client2proxy.Client2ProxyHandler;
+import net.raphimc.viaproxy.proxy.proxy2server.BackendConnectionPool;
+import net.raphimc.viaproxy.proxy.proxy2server.LoadBalancer;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
+import net.raphimc.viaproxy.proxy.util.HostnameRouter;
+import net.raphimc.viaproxy.proxy.util.StatusResponseCache;
+import net.raphimc.viaproxy.realms.RealmsResolver;
 import net.raphimc.viaproxy.saves.SaveManager;
+import net.raphimc.viaproxy.tasks.ConfigWatcherTask;
 import net.raphimc.viaproxy.tasks.UpdateCheckTask;
 import net.raphimc.viaproxy.ui.SplashScreen;
 import net.raphimc.viaproxy.ui.ViaProxyWindow;
 import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.ClassDataSharing;
 import net.raphimc.viaproxy.util.ClassLoaderPriorityUtil;
+import net.raphimc.viaproxy.util.StartupTimer;
 import net.raphimc.viaproxy.util.logging.Logger;
 
 import javax.swing.*;
@@ -60,8 +70,14 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
 
 public class ViaProxy {
@@ -72,11 +88,12 @@ public class ViaProxy {
     public static final LambdaManager EVENT_MANAGER = LambdaManager.threadSafe(new LambdaMetaFactoryGenerator(JavaBypass.TRUSTED_LOOKUP));
     private static /*final*/ PluginManager PLUGIN_MANAGER;
     private static /*final*/ SaveManager SAVE_MANAGER;
-    private static /*final*/ ViaProxyConfig CONFIG;
+    private static volatile ViaProxyConfig CONFIG;
     private static /*final*/ ChannelGroup CLIENT_CHANNELS;
 
     private static Instrumentation instrumentation;
     private static NetServer currentProxyServer;
+    private static File reloadableConfigFile;
     private static ViaProxyWindow viaProxyWindow;
     private static JFrame foregroundWindow;
 
@@ -85,8 +102,14 @@ public class ViaProxy {
     }
 
     public static void main(String[] args) throws Throwable {
+        if (args.length == 1 && args[0].equals(ClassDataSharing.LAUNCH_MODE) && !ClassDataSharing.isChild()) {
+            System.exit(ClassDataSharing.dumpArchive());
+        } else if (ClassDataSharing.shouldRelaunch()) {
+            System.exit(ClassDataSharing.relaunch(args));
+        }
+
         final IClassProvider classProvider = new GuavaClassPathProvider();
-        final TransformerManager transformerManager = new TransformerManager(classProvider);
+        final TransformerManager transformerManager = new CachingTransformerManager(classProvider, "viaproxy", "");
         transformerManager.addTransformerPreprocessor(new MixinsTranslator());
         transformerManager.addTransformer("net.raphimc.viaproxy.injection.mixins.**");
         if (instrumentation != null) {
@@ -112,7 +135,8 @@ public class ViaProxy {
         final boolean useUI = args.length == 0 && !GraphicsEnvironment.isHeadless();
         final boolean useConfig = args.length == 2 && args[0].equals("config");
         final boolean useCLI = args.length > 0 && args[0].equals("cli");
-        if (!useUI && !useConfig && !useCLI) {
+        final boolean useCDSDump = args.length == 1 && args[0].equals(ClassDataSharing.LAUNCH_MODE) && ClassDataSharing.isChild();
+        if (!useUI && !useConfig && !useCLI && !useCDSDump) {
             String fileName = "ViaProxy.jar";
             try {
                 fileName = new File(ViaProxy.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getName();
@@ -121,6 +145,7 @@ public class ViaProxy {
             Logger.LOGGER.info("Usage: java -jar " + fileName + " | Starts ViaProxy in graphical mode if available");
             Logger.LOGGER.info("Usage: java -jar " + fileName + " config <config file> | Starts ViaProxy with the specified config file");
             Logger.LOGGER.info("Usage: java -jar " + fileName + " cli --help | Starts ViaProxy in CLI mode");
+            Logger.LOGGER.info("Usage: java -jar " + fileName + " cdsdump | Creates a class data sharing archive which speeds up the following starts with -DuseCDS (Java 13+)");
             System.exit(1);
         }
 
@@ -178,20 +203,49 @@ public class ViaProxy {
         final File viaProxyConfigFile;
         if (useConfig) {
             viaProxyConfigFile = new File(args[1]);
+        } else if (useCDSDump) {
+            viaProxyConfigFile = new File(ClassDataSharing.ARCHIVE_FILE.getParentFile(), "cdsdump.yml"); // Don't touch the user's config
+            viaProxyConfigFile.delete();
         } else {
             viaProxyConfigFile = new File("viaproxy.yml");
         }
         final boolean firstStart = !viaProxyConfigFile.exists();
 
+        // The saves don't depend on the plugins or the protocol translators, so they are loaded in parallel
+        // -DsequentialStartup loads them after the protocol translators instead, which allows comparing the startup times
+        final boolean sequentialStartup = System.getProperty("sequentialStartup") != null;
+        final StartupTimer startupTimer = new StartupTimer();
+        final FutureTask<SaveManager> saveManagerTask = new FutureTask<>(() -> startupTimer.time("Saves", SaveManager::new));
+        if (!sequentialStartup) {
+            final Thread saveLoaderThread = new Thread(saveManagerTask, "Save-Loader");
+            saveLoaderThread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+            saveLoaderThread.start();
+        }
+
         progressConsumer.accept("Loading Plugins");
-        PLUGIN_MANAGER = new PluginManager();
+        PLUGIN_MANAGER = startupTimer.time("Plugins", PluginManager::new);
         progressConsumer.accept("Loading Protocol Translators");
-        ProtocolTranslator.init();
+        // The platforms which are not needed by the configured target version are only skipped in config file mode, because the target version can't change there without a restart
+        final List<String> lazyTargetVersions = !useUI && !useCLI && System.getProperty("lazyProtocolTranslators") != null ? ProtocolTranslator.readTargetVersions(viaProxyConfigFile) : null;
+        startupTimer.time("Protocol Translators", () -> ProtocolTranslator.init(lazyTargetVersions));
         progressConsumer.accept("Loading Saves");
-        SAVE_MANAGER = new SaveManager();
+        if (sequentialStartup) {
+            saveManagerTask.run();
+        }
+        try {
+            SAVE_MANAGER = saveManagerTask.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to load saves", e.getCause());
+        }
         progressConsumer.accept("Loading Config");
-        CONFIG = new ViaProxyConfig(viaProxyConfigFile);
-        CONFIG.reload();
+        CONFIG = startupTimer.time("Config", () -> {
+            final ViaProxyConfig config = new ViaProxyConfig(viaProxyConfigFile);
+            config.reload();
+            config.applyRealmsSettings(null);
+            return config;
+        });
+        startupTimer.log();
+        CachingTransformerManager.logStatistics();
 
         if (useUI) {
             progressConsumer.accept("Loading GUI");
@@ -211,6 +265,11 @@ public class ViaProxy {
             EVENT_MANAGER.call(new ViaProxyLoadedEvent());
             Logger.LOGGER.info("ViaProxy started successfully!");
         } else {
+            if (useCDSDump) {
+                ClassDataSharing.runTrainingWorkload();
+                viaProxyConfigFile.delete();
+                System.exit(0); // The JVM writes the archive on exit
+            }
             if (useCLI) {
                 final String[] cliArgs = new String[args.length - 1];
                 System.arraycopy(args, 1, cliArgs, 0, cliArgs.length);
@@ -220,6 +279,14 @@ public class ViaProxy {
                 System.exit(0);
             }
 
+            if (!useCLI) {
+                reloadableConfigFile = viaProxyConfigFile;
+                if (System.getProperty("watchConfig") != null) {
+                    final Thread watcherThread = new Thread(new ConfigWatcherTask(viaProxyConfigFile), "Config-Watcher");
+                    watcherThread.setDaemon(true);
+                    watcherThread.start();
+                }
+            }
             if (System.getProperty("skipUpdateCheck") == null) {
                 CompletableFuture.runAsync(new UpdateCheckTask(false));
             }
@@ -239,10 +306,12 @@ public class ViaProxy {
         }
         try {
             Logger.LOGGER.info("Starting proxy server");
-            currentProxyServer = new NetServer(() -> EVENT_MANAGER.call(new Client2ProxyHandlerCreationEvent(new Client2ProxyHandler(), false)).getHandler(), Client2ProxyChannelInitializer::new);
+            currentProxyServer = createProxyServer();
             EVENT_MANAGER.call(new ProxyStartEvent());
             Logger.LOGGER.info("Binding proxy server to " + AddressUtil.toString(CONFIG.getBindAddress()));
             currentProxyServer.bind(CONFIG.getBindAddress(), false);
+            Logger.LOGGER.info("Proxy server bound " + ManagementFactory.getRuntimeMXBean().getUptime() + "ms after the JVM has been started");
+            startBackendServices();
         } catch (Throwable e) {
             currentProxyServer = null;
             throw e;
@@ -256,6 +325,8 @@ public class ViaProxy {
 
             currentProxyServer.getChannel().close();
             currentProxyServer = null;
+            BackendConnectionPool.closeAll();
+            LoadBalancer.stop();
 
             for (Channel channel : CLIENT_CHANNELS) {
                 try {
@@ -266,6 +337,66 @@ public class ViaProxy {
         }
     }
 
+    /**
+     * Reloads the config file. New connections use the new config right away, while established connections keep the config they were started with.<br>
+     * The proxy server is only re-bound if the bind address changed. Connected players stay connected in either case.
+     */
+    public static synchronized void reloadConfig() {
+        if (reloadableConfigFile == null) {
+            throw new IllegalStateException("The config can only be reloaded if ViaProxy has been started without a GUI and without CLI arguments");
+        }
+
+        final long start = System.currentTimeMillis();
+        final ViaProxyConfig oldConfig = CONFIG;
+        final ViaProxyConfig newConfig = new ViaProxyConfig(reloadableConfigFile);
+        newConfig.reload(); // Only parses the config. Services are restarted after the new config has been validated and swapped in
+        if (!ProtocolTranslator.isSupported(newConfig.getTargetVersion())) {
+            throw new IllegalStateException("The protocol translators for " + newConfig.getTargetVersion().getName() + " are not loaded. Restart ViaProxy to change the target version.");
+        }
+        for (HostnameRouter.Route route : newConfig.getHostnameRouter().getRoutes()) {
+            if (!ProtocolTranslator.isSupported(route.version())) {
+                throw new IllegalStateException("The protocol translators for " + route.version().getName() + " (Used by a hostname route) are not loaded. Restart ViaProxy to add routes with this version.");
+            }
+        }
+        if (newConfig.getWildcardDomainHandling() != ViaProxyConfig.WildcardDomainHandling.NONE && !ProtocolTranslator.isFullyLoaded()) {
+            throw new IllegalStateException("Not all protocol translators are loaded. Restart ViaProxy to enable wildcard domain handling.");
+        }
+        if (currentProxyServer != null && !newConfig.getBindAddress().equals(oldConfig.getBindAddress())) {
+            final NetServer newProxyServer = createProxyServer();
+            Logger.LOGGER.info("Re-binding proxy server to " + AddressUtil.toString(newConfig.getBindAddress()));
+            newProxyServer.bind(newConfig.getBindAddress(), false);
+            currentProxyServer.getChannel().close(); // Only closes the listening socket, connected clients are not affected
+            currentProxyServer = newProxyServer;
+        }
+        CONFIG = newConfig;
+
+        StatusResponseCache.invalidateAll();
+        final boolean realmsWereEnabled = RealmsResolver.isEnabled();
+        newConfig.applyRealmsSettings(oldConfig);
+        if (currentProxyServer != null && (realmsWereEnabled != RealmsResolver.isEnabled() || !getBackendSettings(newConfig).equals(getBackendSettings(oldConfig)))) {
+            BackendConnectionPool.closeAll(); // Idle connections only
+            startBackendServices();
+        }
+        Logger.LOGGER.info("Reloaded the config in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static NetServer createProxyServer() {
+        return new NetServer(() -> EVENT_MANAGER.call(new Client2ProxyHandlerCreationEvent(new Client2ProxyHandler(), false)).getHandler(), Client2ProxyChannelInitializer::new);
+    }
+
+    private static List<Object> getBackendSettings(final ViaProxyConfig config) {
+        return Arrays.asList(config.getTargetAddresses(), config.getTargetVersion(), config.getLoadBalancingStrategy(), config.getBackendHealthCheckInterval(), config.getBackendConnectionPoolSize(), config.getBackendConnectionPoolIdleTimeout(), config.getBackendProxyUrl());
+    }
+
+    private static void startBackendServices() {
+        LoadBalancer.start();
+        if (!CONFIG.getTargetVersion().equals(BedrockProtocolVersion.bedrockLatest) && !RealmsResolver.isEnabled()) {
+            for (SocketAddress targetAddress : CONFIG.getTargetAddresses().keySet()) {
+                BackendConnectionPool.prewarm(CONFIG, targetAddress);
+            }
+        }
+    }
+
     private static void loadNetty() {
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.DISABLED);
         if (System.getProperty("io.netty.allocator.maxOrder") == null) {
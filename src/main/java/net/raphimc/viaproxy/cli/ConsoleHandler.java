@@ -21,11 +21,14 @@ import com.viaversion.viaversion.api.Via;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.plugins.events.ConsoleCommandEvent;
 import net.raphimc.viaproxy.protocoltranslator.viaproxy.ConsoleCommandSender;
+import net.raphimc.viaproxy.realms.RealmsResolver;
 import net.raphimc.viaproxy.util.ArrayHelper;
+import net.raphimc.viaproxy.util.Metrics;
 import net.raphimc.viaproxy.util.logging.Logger;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Scanner;
 
 public class ConsoleHandler {
@@ -59,6 +62,27 @@ public class ConsoleHandler {
                         Via.getManager().getCommandHandler().onCommand(new ConsoleCommandSender(), args.getAsArray());
                     } else if (command.equalsIgnoreCase("exit")) {
                         System.exit(0);
+                    } else if (command.equalsIgnoreCase("reload")) {
+                        try {
+                            ViaProxy.reloadConfig();
+                        } catch (IllegalStateException e) {
+                            System.out.println(e.getMessage());
+                        }
+                    } else if (command.equalsIgnoreCase("metrics")) {
+                        System.out.println("Metrics:");
+                        for (Map.Entry<String, Long> entry : Metrics.snapshot().entrySet()) {
+                            System.out.println(" " + entry.getKey() + ": " + entry.getValue());
+                        }
+                    } else if (command.equalsIgnoreCase("realms")) {
+                        if (args.isIndexValid(0) && args.getString(0).equalsIgnoreCase("refresh")) {
+                            RealmsResolver.refreshAll();
+                            System.out.println("Refreshing the realms in the background");
+                        } else {
+                            System.out.println("Realms:");
+                            for (String line : RealmsResolver.describe()) {
+                                System.out.println(" " + line);
+                            }
+                        }
                     } else if (command.equalsIgnoreCase("threaddump")) {
                         System.out.println("Thread Dump:");
                         for (Thread thread : Thread.getAllStackTraces().keySet()) {
@@ -70,7 +94,10 @@ public class ConsoleHandler {
                         System.out.println("Invalid Command!");
                         System.out.println(" gc | Run the garbage collector");
                         System.out.println(" exit | Shutdown ViaProxy");
+                        System.out.println(" reload | Reload the config file without disconnecting players");
                         System.out.println(" via | Run a viaversion command");
+                        System.out.println(" metrics | Print the values of all metrics");
+                        System.out.println(" realms [refresh] | Print or refresh the resolved realms");
                         System.out.println(" threaddump | Print the stacktrace of all running threads");
                     }
                 } catch (Throwable e) {
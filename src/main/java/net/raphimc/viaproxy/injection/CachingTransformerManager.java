@@ -0,0 +1,329 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.injection;
+
+import net.lenni0451.classtransform.TransformerManager;
+import net.lenni0451.classtransform.transformer.IBytecodeTransformer;
+import net.lenni0451.classtransform.transformer.IRawTransformer;
+import net.lenni0451.classtransform.utils.tree.IClassProvider;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.util.Metrics;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.io.*;
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A {@link TransformerManager} which stores the transformed classes on disk, so they don't have to be transformed again on the next start.<br>
+ * A cached class is only used if the hash of the input class matches and the cache directory is keyed by the ViaProxy version and the registered transformers.<br>
+ * The key contains the bytecode of the transformer classes and of the raw, bytecode and class file transformers, so changing a transformer without changing its name invalidates the cache.<br>
+ * The cache is disabled in development environments (where the version is not set) and can be disabled using the "skipTransformerCache" system property.
+ */
+public class CachingTransformerManager extends TransformerManager {
+
+    private static final File CACHE_DIRECTORY = new File("cache", "transformed-classes");
+    private static final int FILE_MAGIC = 0x56505443; // VPTC
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong SAVED_NANOS = new AtomicLong();
+    private static final AtomicLong TRANSFORM_NANOS = new AtomicLong();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "Transformer-Cache-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IClassProvider classProvider;
+    private final String cacheName;
+    private final String context;
+    private final List<String> transformers = new ArrayList<>();
+    private final List<String> otherTransformers = new ArrayList<>();
+    private final boolean enabled;
+    private volatile CacheDirectory cacheDirectory;
+
+    /**
+     * @param classProvider The class provider
+     * @param cacheName     The name of the cache directory. Old caches with the same name are deleted
+     * @param context       Additional data which invalidates the cache if it changes (e.g. the last modified time of a plugin jar)
+     */
+    public CachingTransformerManager(final IClassProvider classProvider, final String cacheName, final String context) {
+        super(classProvider);
+        this.classProvider = classProvider;
+        this.cacheName = cacheName.replaceAll("[^a-zA-Z0-9._-]", "_");
+        this.context = context;
+        this.enabled = System.getProperty("skipTransformerCache") == null && !ViaProxy.VERSION.equals("${version}");
+        if (this.enabled) {
+            sha1(new byte[0]); // Load the message digest before any class is transformed
+        }
+    }
+
+    @Override
+    public void addTransformer(final String transformer) {
+        synchronized (this.transformers) {
+            this.transformers.add(transformer);
+            this.cacheDirectory = null;
+        }
+        super.addTransformer(transformer);
+    }
+
+    @Override
+    public void addRawTransformer(final String className, final IRawTransformer rawTransformer) {
+        this.addOtherTransformer("raw:" + className, rawTransformer);
+        super.addRawTransformer(className, rawTransformer);
+    }
+
+    @Override
+    public void addBytecodeTransformer(final IBytecodeTransformer bytecodeTransformer) {
+        this.addOtherTransformer("bytecode", bytecodeTransformer);
+        super.addBytecodeTransformer(bytecodeTransformer);
+    }
+
+    @Override
+    public void addClassFileTransformer(final ClassLoader classLoader, final ClassFileTransformer classFileTransformer) {
+        this.addOtherTransformer("classfile", classFileTransformer);
+        super.addClassFileTransformer(classLoader, classFileTransformer);
+    }
+
+    @Override
+    public byte[] transform(final String name, final byte[] bytes, final boolean calculateStackMapFrames) {
+        if (!this.enabled || name == null || bytes == null) {
+            return super.transform(name, bytes, calculateStackMapFrames);
+        }
+
+        final CacheDirectory cacheDirectory = this.getCacheDirectory();
+        final String className = name.replace('/', '.');
+        final byte[] inputHash = cacheDirectory.index.contains(className) ? sha1(bytes) : null;
+        if (inputHash != null) {
+            final byte[] cached = cacheDirectory.read(className, inputHash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final long start = System.nanoTime();
+        final byte[] transformed = super.transform(name, bytes, calculateStackMapFrames);
+        final long transformTime = System.nanoTime() - start;
+        if (transformed != null) {
+            MISSES.incrementAndGet();
+            TRANSFORM_NANOS.addAndGet(transformTime);
+            cacheDirectory.write(className, inputHash != null ? inputHash : sha1(bytes), transformTime, transformed);
+        }
+        return transformed;
+    }
+
+    /**
+     * Logs how many classes were loaded from the cache and how much time was saved by that.
+     */
+    public static void logStatistics() {
+        final long hits = HITS.get();
+        final long misses = MISSES.get();
+        if (hits == 0 && misses == 0) return;
+
+        final long savedMillis = SAVED_NANOS.get() / 1_000_000L;
+        final long transformMillis = TRANSFORM_NANOS.get() / 1_000_000L;
+        Metrics.add("transformer_cache.hits", hits);
+        Metrics.add("transformer_cache.misses", misses);
+        Metrics.add("transformer_cache.saved_ms", savedMillis);
+        Logger.LOGGER.info("Transformer cache: " + hits + " hits, " + misses + " misses (saved ~" + savedMillis + "ms, spent " + transformMillis + "ms transforming)");
+    }
+
+    private void addOtherTransformer(final String type, final Object transformer) {
+        if (!this.enabled) return;
+
+        // Lambdas are compiled into the declaring class and their generated class name is not stable
+        String className = transformer.getClass().getName();
+        if (className.contains("$$Lambda")) {
+            className = className.substring(0, className.indexOf("$$Lambda"));
+        }
+        final ClassLoader classLoader = transformer.getClass().getClassLoader() != null ? transformer.getClass().getClassLoader() : ClassLoader.getSystemClassLoader();
+        String classHash = "unknown";
+        try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (is != null) {
+                classHash = toHex(sha1(is.readAllBytes()));
+            }
+        } catch (IOException ignored) {
+        }
+
+        synchronized (this.transformers) {
+            this.otherTransformers.add(type + ":" + className + "#" + classHash);
+            this.cacheDirectory = null;
+        }
+    }
+
+    /**
+     * @return The hash of the bytecode of all registered transformer classes. Wildcard transformers are resolved using the class provider.
+     */
+    private String hashTransformers(final List<String> sortedTransformers) {
+        final MessageDigest digest = newSha1();
+        Map<String, Supplier<byte[]>> allClasses = null;
+        for (String transformer : sortedTransformers) {
+            digest.update(transformer.getBytes(StandardCharsets.UTF_8));
+            if (transformer.endsWith(".*") || transformer.endsWith(".**")) {
+                if (allClasses == null) {
+                    allClasses = new TreeMap<>(this.classProvider.getAllClasses());
+                }
+                final String packagePrefix = transformer.substring(0, transformer.lastIndexOf('.') + 1);
+                final boolean recursive = transformer.endsWith(".**");
+                for (Map.Entry<String, Supplier<byte[]>> entry : allClasses.entrySet()) {
+                    if (entry.getKey().startsWith(packagePrefix) && (recursive || entry.getKey().indexOf('.', packagePrefix.length()) == -1)) {
+                        digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                        digest.update(entry.getValue().get());
+                    }
+                }
+            } else {
+                try {
+                    digest.update(this.classProvider.getClass(transformer));
+                } catch (ClassNotFoundException ignored) { // Reported by the transformer manager
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private CacheDirectory getCacheDirectory() {
+        CacheDirectory cacheDirectory = this.cacheDirectory;
+        if (cacheDirectory == null) {
+            synchronized (this.transformers) {
+                cacheDirectory = this.cacheDirectory;
+                if (cacheDirectory == null) {
+                    final List<String> sortedTransformers = new ArrayList<>(this.transformers);
+                    Collections.sort(sortedTransformers);
+                    final List<String> sortedOtherTransformers = new ArrayList<>(this.otherTransformers);
+                    Collections.sort(sortedOtherTransformers);
+                    final String key = ViaProxy.VERSION + "|" + ViaProxy.IMPL_VERSION + "|" + this.context + "|" + this.hashTransformers(sortedTransformers) + "|" + String.join(",", sortedOtherTransformers);
+                    this.cacheDirectory = cacheDirectory = new CacheDirectory(new File(CACHE_DIRECTORY, this.cacheName + "-" + toHex(sha1(key.getBytes()))));
+                }
+            }
+        }
+        return cacheDirectory;
+    }
+
+    private static byte[] sha1(final byte[] bytes) {
+        return newSha1().digest(bytes);
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private class CacheDirectory {
+
+        private final File directory;
+        private final Set<String> index = ConcurrentHashMap.newKeySet();
+
+        private CacheDirectory(final File directory) {
+            this.directory = directory;
+
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().endsWith(".bin")) {
+                        this.index.add(file.getName().substring(0, file.getName().length() - 4));
+                    }
+                }
+            } else { // The transformers or the version changed
+                final File[] oldDirectories = CACHE_DIRECTORY.listFiles();
+                if (oldDirectories != null) {
+                    for (File oldDirectory : oldDirectories) {
+                        if (oldDirectory.getName().startsWith(CachingTransformerManager.this.cacheName + "-")) {
+                            deleteDirectory(oldDirectory);
+                        }
+                    }
+                }
+            }
+        }
+
+        private byte[] read(final String className, final byte[] inputHash) {
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(this.directory, className + ".bin"))))) {
+                if (dis.readInt() != FILE_MAGIC) return null;
+                final byte[] cachedHash = new byte[dis.readUnsignedByte()];
+                dis.readFully(cachedHash);
+                if (!Arrays.equals(cachedHash, inputHash)) return null;
+                final long transformTime = dis.readLong();
+                final byte[] transformed = new byte[dis.readInt()];
+                dis.readFully(transformed);
+
+                HITS.incrementAndGet();
+                SAVED_NANOS.addAndGet(transformTime);
+                return transformed;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private void write(final String className, final byte[] inputHash, final long transformTime, final byte[] transformed) {
+            this.index.add(className);
+            WRITER.execute(() -> {
+                try {
+                    this.directory.mkdirs();
+                    final File file = new File(this.directory, className + ".bin");
+                    final File tempFile = new File(this.directory, className + ".tmp");
+                    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                        dos.writeInt(FILE_MAGIC);
+                        dos.writeByte(inputHash.length);
+                        dos.write(inputHash);
+                        dos.writeLong(transformTime);
+                        dos.writeInt(transformed.length);
+                        dos.write(transformed);
+                    }
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (Throwable e) {
+                    Logger.LOGGER.warn("Failed to cache transformed class " + className + ": " + e.getMessage());
+                }
+            });
+        }
+
+        private void deleteDirectory(final File directory) {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+
+    }
+
+}
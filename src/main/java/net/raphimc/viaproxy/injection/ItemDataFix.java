@@ -0,0 +1,59 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.injection;
+
+import com.viaversion.viaversion.api.minecraft.data.StructuredDataContainer;
+import com.viaversion.viaversion.api.minecraft.data.StructuredDataKey;
+import com.viaversion.viaversion.api.minecraft.item.data.FoodProperties;
+import com.viaversion.viaversion.api.minecraft.item.data.ToolProperties;
+
+/**
+ * The data components which are added to an item to restore the behaviour of an older server version.<br>
+ * Precomputed per server version and item id by {@link ItemDataFixes}.
+ *
+ * @param maxDamage    The max damage or null
+ * @param food         The food properties or null
+ * @param emptyFood    If an empty food component should be added
+ * @param maxStackSize The max stack size or null
+ * @param tool         The tool properties or null
+ */
+public record ItemDataFix(Integer maxDamage, FoodProperties food, boolean emptyFood, Integer maxStackSize, ToolProperties tool) {
+
+    public boolean isEmpty() {
+        return this.maxDamage == null && this.food == null && !this.emptyFood && this.maxStackSize == null && this.tool == null;
+    }
+
+    public void apply(final StructuredDataContainer data) {
+        if (this.maxDamage != null) {
+            data.set(StructuredDataKey.MAX_DAMAGE, this.maxDamage);
+        }
+        if (this.food != null) {
+            data.set(StructuredDataKey.FOOD1_20_5, this.food);
+        }
+        if (this.maxStackSize != null) {
+            data.set(StructuredDataKey.MAX_STACK_SIZE, this.maxStackSize);
+        }
+        if (this.emptyFood) {
+            data.addEmpty(StructuredDataKey.FOOD1_20_5);
+        }
+        if (this.tool != null) {
+            data.set(StructuredDataKey.TOOL, this.tool);
+        }
+    }
+
+}
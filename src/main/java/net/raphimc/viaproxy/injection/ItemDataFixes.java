@@ -0,0 +1,131 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.injection;
+
+import com.viaversion.viaversion.api.minecraft.item.data.FoodEffect;
+import com.viaversion.viaversion.api.minecraft.item.data.FoodProperties;
+import com.viaversion.viaversion.api.minecraft.item.data.ToolProperties;
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.vialegacy.api.LegacyProtocolVersion;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * The item behaviour of older server versions and the {@link ItemDataFix} tables built from it.<br>
+ * Each table holds the fix of every item id for one server version, so translating an item is a single array lookup.
+ */
+public class ItemDataFixes {
+
+    private final Set<String> foodItems_b1_7_3 = new HashSet<>();
+    private final Map<String, Integer> armorMaxDamage_b1_8_1 = new HashMap<>();
+    private final Set<String> swordItems1_8 = new HashSet<>();
+    private final Map<ProtocolVersion, Map<String, ToolProperties>> toolDataChanges = new LinkedHashMap<>();
+    private final Map<ProtocolVersion, ItemDataFix[]> tables = new ConcurrentHashMap<>();
+
+    public void addFoodItem_b1_7_3(final String item) {
+        this.foodItems_b1_7_3.add(item);
+        this.tables.clear();
+    }
+
+    public void addArmorMaxDamage_b1_8_1(final String item, final int maxDamage) {
+        this.armorMaxDamage_b1_8_1.put(item, maxDamage);
+        this.tables.clear();
+    }
+
+    public void addSwordItem1_8(final String item) {
+        this.swordItems1_8.add(item);
+        this.tables.clear();
+    }
+
+    /**
+     * @param untilVersion   The last server version which uses the tool properties
+     * @param toolProperties The tool properties by item identifier. Versions have to be added from the oldest to the newest
+     */
+    public void addToolData(final ProtocolVersion untilVersion, final Map<String, ToolProperties> toolProperties) {
+        this.toolDataChanges.put(untilVersion, toolProperties);
+        this.tables.clear();
+    }
+
+    /**
+     * @param serverVersion The version of the server
+     * @param identifiers   The item identifier by item id
+     * @param itemCount     The number of item ids
+     * @return The fixes by item id. Items which don't need a fix are null
+     */
+    public ItemDataFix[] getTable(final ProtocolVersion serverVersion, final IntFunction<String> identifiers, final int itemCount) {
+        return this.tables.computeIfAbsent(serverVersion, version -> {
+            final ItemDataFix[] table = new ItemDataFix[itemCount];
+            for (int id = 0; id < itemCount; id++) {
+                final String identifier = identifiers.apply(id);
+                if (identifier == null) continue;
+
+                final ItemDataFix itemDataFix = this.create(version, identifier);
+                if (!itemDataFix.isEmpty()) {
+                    table[id] = itemDataFix;
+                }
+            }
+            return table;
+        });
+    }
+
+    /**
+     * @param serverVersion The version of the server
+     * @param identifier    The identifier of the item
+     * @return The fix of the item. Empty if the item doesn't need one
+     */
+    public ItemDataFix create(final ProtocolVersion serverVersion, final String identifier) {
+        Integer maxDamage = null;
+        FoodProperties food = null;
+        boolean emptyFood = false;
+        Integer maxStackSize = null;
+        ToolProperties tool = null;
+        if (serverVersion.olderThanOrEqualTo(ProtocolVersion.v1_17_1)) {
+            if (identifier.equals("minecraft:crossbow")) {
+                maxDamage = 326;
+            }
+        }
+        if (serverVersion.betweenInclusive(LegacyProtocolVersion.b1_8tob1_8_1, ProtocolVersion.v1_8)) {
+            if (this.swordItems1_8.contains(identifier)) {
+                food = new FoodProperties(0, 0F, true, 3600, null, new FoodEffect[0]);
+            }
+        }
+        if (serverVersion.olderThanOrEqualTo(LegacyProtocolVersion.b1_8tob1_8_1)) {
+            if (this.armorMaxDamage_b1_8_1.containsKey(identifier)) {
+                maxDamage = this.armorMaxDamage_b1_8_1.get(identifier);
+            }
+        }
+        if (serverVersion.olderThanOrEqualTo(LegacyProtocolVersion.b1_7tob1_7_3)) {
+            if (this.foodItems_b1_7_3.contains(identifier)) {
+                maxStackSize = 1;
+                emptyFood = true;
+            }
+        }
+        for (Map.Entry<ProtocolVersion, Map<String, ToolProperties>> entry : this.toolDataChanges.entrySet()) {
+            if (serverVersion.olderThanOrEqualTo(entry.getKey())) {
+                tool = entry.getValue().get(identifier);
+                if (tool != null) {
+                    break;
+                }
+            }
+        }
+        return new ItemDataFix(maxDamage, food, emptyFood, maxStackSize, tool);
+    }
+
+}
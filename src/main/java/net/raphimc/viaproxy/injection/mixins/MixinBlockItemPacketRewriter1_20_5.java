@@ -19,18 +19,14 @@
 package net.raphimc.viaproxy.injection.mixins;
 
 import com.viaversion.viaversion.api.connection.UserConnection;
+import com.viaversion.viaversion.api.data.FullMappings;
 import com.viaversion.viaversion.api.minecraft.HolderSet;
-import com.viaversion.viaversion.api.minecraft.data.StructuredDataContainer;
-import com.viaversion.viaversion.api.minecraft.data.StructuredDataKey;
 import com.viaversion.viaversion.api.minecraft.item.Item;
-import com.viaversion.viaversion.api.minecraft.item.data.FoodEffect;
-import com.viaversion.viaversion.api.minecraft.item.data.FoodProperties;
 import com.viaversion.viaversion.api.minecraft.item.data.ToolProperties;
 import com.viaversion.viaversion.api.minecraft.item.data.ToolRule;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
 import com.viaversion.viaversion.libs.fastutil.ints.IntOpenHashSet;
 import com.viaversion.viaversion.libs.fastutil.ints.IntSet;
-import com.viaversion.viaversion.libs.gson.JsonArray;
 import com.viaversion.viaversion.libs.gson.JsonElement;
 import com.viaversion.viaversion.libs.gson.JsonObject;
 import com.viaversion.viaversion.protocols.v1_20_2to1_20_3.packet.ClientboundPacket1_20_3;
@@ -38,8 +34,9 @@ import com.viaversion.viaversion.protocols.v1_20_3to1_20_5.Protocol1_20_3To1_20_
 import com.viaversion.viaversion.protocols.v1_20_3to1_20_5.packet.ServerboundPacket1_20_5;
 import com.viaversion.viaversion.protocols.v1_20_3to1_20_5.rewriter.BlockItemPacketRewriter1_20_5;
 import com.viaversion.viaversion.rewriter.ItemRewriter;
-import net.raphimc.vialegacy.api.LegacyProtocolVersion;
 import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.injection.ItemDataFix;
+import net.raphimc.viaproxy.injection.ItemDataFixes;
 import net.raphimc.viaproxy.plugins.events.ViaLoadingEvent;
 import net.raphimc.viaproxy.protocoltranslator.impl.ViaProxyMappingDataLoader;
 import org.spongepowered.asm.mixin.Mixin;
@@ -55,16 +52,7 @@ import java.util.*;
 public abstract class MixinBlockItemPacketRewriter1_20_5 extends ItemRewriter<ClientboundPacket1_20_3, ServerboundPacket1_20_5, Protocol1_20_3To1_20_5> {
 
     @Unique
-    private final Set<String> foodItems_b1_7_3 = new HashSet<>();
-
-    @Unique
-    private final Map<String, Integer> armorMaxDamage_b1_8_1 = new HashMap<>();
-
-    @Unique
-    private final Set<String> swordItems1_8 = new HashSet<>();
-
-    @Unique
-    private final Map<ProtocolVersion, Map<String, ToolProperties>> toolDataChanges = new LinkedHashMap<>();
+    private final ItemDataFixes itemDataFixes = new ItemDataFixes();
 
     public MixinBlockItemPacketRewriter1_20_5() {
         super(null, null, null, null, null);
@@ -72,50 +60,50 @@ public abstract class MixinBlockItemPacketRewriter1_20_5 extends ItemRewriter<Cl
 
     @Inject(method = "<init>", at = @At("RETURN"))
     public void loadItemMappings(Protocol1_20_3To1_20_5 protocol, CallbackInfo ci) {
-        this.foodItems_b1_7_3.add("minecraft:apple");
-        this.foodItems_b1_7_3.add("minecraft:mushroom_stew");
-        this.foodItems_b1_7_3.add("minecraft:bread");
-        this.foodItems_b1_7_3.add("minecraft:porkchop");
-        this.foodItems_b1_7_3.add("minecraft:cooked_porkchop");
-        this.foodItems_b1_7_3.add("minecraft:golden_apple");
-        this.foodItems_b1_7_3.add("minecraft:cod");
-        this.foodItems_b1_7_3.add("minecraft:cooked_cod");
-        this.foodItems_b1_7_3.add("minecraft:cookie");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:apple");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:mushroom_stew");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:bread");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:porkchop");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:cooked_porkchop");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:golden_apple");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:cod");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:cooked_cod");
+        this.itemDataFixes.addFoodItem_b1_7_3("minecraft:cookie");
 
         final JsonObject armorMaxDamages = ViaProxyMappingDataLoader.INSTANCE.loadData("armor-damages-b1.8.1.json");
         for (Map.Entry<String, JsonElement> entry : armorMaxDamages.entrySet()) {
             final String item = entry.getKey();
             final int maxDamage = entry.getValue().getAsInt();
-            this.armorMaxDamage_b1_8_1.put(item, maxDamage);
+            this.itemDataFixes.addArmorMaxDamage_b1_8_1(item, maxDamage);
         }
 
-        this.swordItems1_8.add("minecraft:wooden_sword");
-        this.swordItems1_8.add("minecraft:stone_sword");
-        this.swordItems1_8.add("minecraft:iron_sword");
-        this.swordItems1_8.add("minecraft:golden_sword");
-        this.swordItems1_8.add("minecraft:diamond_sword");
+        this.itemDataFixes.addSwordItem1_8("minecraft:wooden_sword");
+        this.itemDataFixes.addSwordItem1_8("minecraft:stone_sword");
+        this.itemDataFixes.addSwordItem1_8("minecraft:iron_sword");
+        this.itemDataFixes.addSwordItem1_8("minecraft:golden_sword");
+        this.itemDataFixes.addSwordItem1_8("minecraft:diamond_sword");
 
         ViaProxy.EVENT_MANAGER.registerRunnable(() -> {
-            final JsonObject itemToolComponents = ViaProxyMappingDataLoader.INSTANCE.loadData("item-tool-components.json");
-            for (Map.Entry<String, JsonElement> entry : itemToolComponents.entrySet()) {
-                final ProtocolVersion version = ProtocolVersion.getClosest(entry.getKey());
+            final ViaProxyMappingDataLoader.BinaryData itemToolComponents = ViaProxyMappingDataLoader.INSTANCE.loadBinaryData("item-tool-components.bin");
+            final int versionCount = itemToolComponents.readInt();
+            for (int i = 0; i < versionCount; i++) {
+                final String versionName = itemToolComponents.readString();
+                final ProtocolVersion version = ProtocolVersion.getClosest(versionName);
                 if (version == null) {
-                    throw new IllegalStateException("Unknown protocol version: " + entry.getKey());
+                    throw new IllegalStateException("Unknown protocol version: " + versionName);
                 }
-                final Map<String, ToolProperties> toolProperties = new HashMap<>();
-                final JsonArray toolComponents = entry.getValue().getAsJsonArray();
-                for (JsonElement toolComponent : toolComponents) {
-                    final JsonObject toolComponentObject = toolComponent.getAsJsonObject();
-                    final String item = toolComponentObject.get("item").getAsString();
-                    final float defaultMiningSpeed = toolComponentObject.get("default_mining_speed").getAsFloat();
-                    final int damagePerBlock = toolComponentObject.get("damage_per_block").getAsInt();
-                    final int[] suitableFor = this.blockJsonArrayToIds(version, toolComponentObject.getAsJsonArray("suitable_for"));
-                    final List<ToolRule> toolRules = new ArrayList<>();
-                    final JsonArray miningSpeeds = toolComponentObject.getAsJsonArray("mining_speeds");
-                    for (JsonElement miningSpeed : miningSpeeds) {
-                        final JsonObject miningSpeedObject = miningSpeed.getAsJsonObject();
-                        final int[] blocks = this.blockJsonArrayToIds(version, miningSpeedObject.getAsJsonArray("blocks"));
-                        final float speed = miningSpeedObject.get("speed").getAsFloat();
+                final int toolComponentCount = itemToolComponents.readInt();
+                final Map<String, ToolProperties> toolProperties = new HashMap<>(toolComponentCount);
+                for (int j = 0; j < toolComponentCount; j++) {
+                    final String item = itemToolComponents.readString();
+                    final float defaultMiningSpeed = itemToolComponents.readFloat();
+                    final int damagePerBlock = itemToolComponents.readInt();
+                    final int[] suitableFor = this.blockNamesToIds(version, itemToolComponents.readStringArray());
+                    final int miningSpeedCount = itemToolComponents.readInt();
+                    final List<ToolRule> toolRules = new ArrayList<>(miningSpeedCount + 1);
+                    for (int k = 0; k < miningSpeedCount; k++) {
+                        final int[] blocks = this.blockNamesToIds(version, itemToolComponents.readStringArray());
+                        final float speed = itemToolComponents.readFloat();
                         toolRules.add(new ToolRule(HolderSet.of(blocks), speed, null));
                     }
                     if (suitableFor.length > 0) {
@@ -123,65 +111,38 @@ public abstract class MixinBlockItemPacketRewriter1_20_5 extends ItemRewriter<Cl
                     }
                     toolProperties.put(item, new ToolProperties(toolRules.toArray(new ToolRule[0]), defaultMiningSpeed, damagePerBlock));
                 }
-                this.toolDataChanges.put(version, toolProperties);
+                this.itemDataFixes.addToolData(version, toolProperties);
             }
         }, ViaLoadingEvent.class);
     }
 
     @Inject(method = "toStructuredItem", at = @At("RETURN"))
     private void appendItemDataFixComponents(UserConnection user, Item old, CallbackInfoReturnable<Item> cir) {
-        final StructuredDataContainer data = cir.getReturnValue().dataContainer();
-        final String identifier = this.protocol.getMappingData().getFullItemMappings().identifier(cir.getReturnValue().identifier());
-        if (user.getProtocolInfo().serverProtocolVersion().olderThanOrEqualTo(ProtocolVersion.v1_17_1)) {
-            if (identifier.equals("minecraft:crossbow")) {
-                data.set(StructuredDataKey.MAX_DAMAGE, 326);
-            }
-        }
-        if (user.getProtocolInfo().serverProtocolVersion().betweenInclusive(LegacyProtocolVersion.b1_8tob1_8_1, ProtocolVersion.v1_8)) {
-            if (this.swordItems1_8.contains(identifier)) {
-                data.set(StructuredDataKey.FOOD1_20_5, new FoodProperties(0, 0F, true, 3600, null, new FoodEffect[0]));
-            }
-        }
-        if (user.getProtocolInfo().serverProtocolVersion().olderThanOrEqualTo(LegacyProtocolVersion.b1_8tob1_8_1)) {
-            if (this.armorMaxDamage_b1_8_1.containsKey(identifier)) {
-                data.set(StructuredDataKey.MAX_DAMAGE, this.armorMaxDamage_b1_8_1.get(identifier));
-            }
-        }
-        if (user.getProtocolInfo().serverProtocolVersion().olderThanOrEqualTo(LegacyProtocolVersion.b1_7tob1_7_3)) {
-            if (this.foodItems_b1_7_3.contains(identifier)) {
-                data.set(StructuredDataKey.MAX_STACK_SIZE, 1);
-                data.addEmpty(StructuredDataKey.FOOD1_20_5);
-            }
-        }
-
-        for (Map.Entry<ProtocolVersion, Map<String, ToolProperties>> entry : this.toolDataChanges.entrySet()) {
-            if (user.getProtocolInfo().serverProtocolVersion().olderThanOrEqualTo(entry.getKey())) {
-                final ToolProperties toolProperties = entry.getValue().get(identifier);
-                if (toolProperties != null) {
-                    data.set(StructuredDataKey.TOOL, toolProperties);
-                    break;
-                }
+        final Item item = cir.getReturnValue();
+        final FullMappings itemMappings = this.protocol.getMappingData().getFullItemMappings();
+        final ItemDataFix[] table = this.itemDataFixes.getTable(user.getProtocolInfo().serverProtocolVersion(), itemMappings::identifier, itemMappings.size());
+        if (item.identifier() >= 0 && item.identifier() < table.length) {
+            final ItemDataFix itemDataFix = table[item.identifier()];
+            if (itemDataFix != null) {
+                itemDataFix.apply(item.dataContainer());
             }
         }
     }
 
     @Unique
-    private int[] blockJsonArrayToIds(final ProtocolVersion protocolVersion, final JsonArray jsonArray) {
+    private int[] blockNamesToIds(final ProtocolVersion protocolVersion, final String[] names) {
         final IntSet ids = new IntOpenHashSet();
-        for (final JsonElement element : jsonArray) {
-            final String name = element.getAsString();
+        for (final String name : names) {
             if (name.startsWith("#")) { // Material name
-                final String material = name.substring(1);
-                for (Map.Entry<String, Map<ProtocolVersion, String>> entry : ViaProxyMappingDataLoader.BLOCK_MATERIALS.entrySet()) {
-                    for (Map.Entry<ProtocolVersion, String> materialEntry : entry.getValue().entrySet()) {
-                        if (protocolVersion.olderThanOrEqualTo(materialEntry.getKey()) && materialEntry.getValue().equals(material)) {
-                            ids.add(this.protocol.getMappingData().blockId(entry.getKey()));
-                            break;
-                        }
+                final List<ViaProxyMappingDataLoader.MaterialBlock> materialBlocks = ViaProxyMappingDataLoader.MATERIAL_BLOCKS.get(name.substring(1));
+                if (materialBlocks == null) continue;
+                for (ViaProxyMappingDataLoader.MaterialBlock materialBlock : materialBlocks) {
+                    if (protocolVersion.olderThanOrEqualTo(materialBlock.untilVersion())) {
+                        ids.add(this.protocol.getMappingData().blockId(materialBlock.block()));
                     }
                 }
             } else { // Block name
-                ids.add(this.protocol.getMappingData().blockId(element.getAsString()));
+                ids.add(this.protocol.getMappingData().blockId(name));
             }
         }
         return ids.toIntArray();
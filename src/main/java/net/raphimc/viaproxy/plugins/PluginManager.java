@@ -18,13 +18,13 @@
 package net.raphimc.viaproxy.plugins;
 
 import com.vdurmont.semver4j.Semver;
-import net.lenni0451.classtransform.TransformerManager;
 import net.lenni0451.classtransform.additionalclassprovider.GuavaClassPathProvider;
 import net.lenni0451.classtransform.additionalclassprovider.LazyFileClassProvider;
 import net.lenni0451.classtransform.utils.loader.InjectionClassLoader;
 import net.lenni0451.classtransform.utils.tree.IClassProvider;
 import net.lenni0451.reflect.stream.RStream;
 import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.injection.CachingTransformerManager;
 import net.raphimc.viaproxy.util.logging.Logger;
 import org.objectweb.asm.Opcodes;
 import org.yaml.snakeyaml.Yaml;
@@ -34,16 +34,16 @@ import xyz.wagyourtail.jvmdg.runtime.ClassDowngradingAgent;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PluginManager {
 
     public static final File PLUGINS_DIR = new File("plugins");
 
-    private final Yaml yaml = new Yaml();
     private final IClassProvider rootClassProvider = new GuavaClassPathProvider();
     private final List<ViaProxyPlugin> plugins = new ArrayList<>();
 
@@ -73,28 +73,108 @@ public class PluginManager {
             }
         }
 
-        final File[] files = PLUGINS_DIR.listFiles();
-        if (files == null) return;
+        final File[] files = PLUGINS_DIR.listFiles(file -> file.getName().toLowerCase().endsWith(".jar"));
+        if (files == null || files.length == 0) return;
+        Arrays.sort(files, Comparator.comparing(File::getName));
 
-        for (File file : files) {
-            if (!file.getName().toLowerCase().endsWith(".jar")) continue;
+        final long start = System.currentTimeMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.length, Runtime.getRuntime().availableProcessors()), r -> {
+            final Thread thread = new Thread(r, "Plugin-Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final List<Future<ScannedJar>> futures = new ArrayList<>(files.length);
+        for (File file : files) { // Only the class loader setup and the viaproxy.yml parsing run in parallel
+            futures.add(executor.submit(() -> this.scanJar(file)));
+        }
+        final List<ScannedJar> scannedJars = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            try {
+                scannedJars.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Logger.LOGGER.error("Unable to load plugin '" + files[i].getName() + "'", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        executor.shutdown();
+
+        final List<ViaProxyPlugin> loadedPlugins = new ArrayList<>(scannedJars.size());
+        for (ScannedJar scannedJar : scannedJars) { // Plugin code runs sequentially in file name order on this thread
             try {
-                loadAndScanJar(file);
+                loadedPlugins.add(this.loadPlugin(scannedJar));
             } catch (Throwable e) {
-                Logger.LOGGER.error("Unable to load plugin '" + file.getName() + "'", e);
+                Logger.LOGGER.error("Unable to load plugin '" + scannedJar.file().getName() + "'", e);
             }
         }
+        Logger.LOGGER.info("Loaded " + loadedPlugins.size() + " plugins in " + (System.currentTimeMillis() - start) + "ms");
 
+        this.plugins.addAll(sortByDependencies(loadedPlugins));
         for (ViaProxyPlugin plugin : this.plugins) {
-            if (!plugin.isEnabled()) {
-                this.enablePlugin(plugin);
+            this.enablePlugin(plugin);
+        }
+    }
+
+    /**
+     * Sorts the plugins so that every plugin comes after its dependencies (Kahn's algorithm).<br>
+     * Plugins which don't depend on each other are sorted by name, so the order is the same on every start.<br>
+     * Plugins with missing or cyclic dependencies are appended at the end and won't be enabled.
+     */
+    private static List<ViaProxyPlugin> sortByDependencies(final List<ViaProxyPlugin> plugins) {
+        final Map<String, ViaProxyPlugin> pluginsByName = new HashMap<>();
+        for (ViaProxyPlugin plugin : plugins) {
+            pluginsByName.put(plugin.getName().toLowerCase(Locale.ROOT), plugin);
+        }
+
+        final Map<ViaProxyPlugin, Integer> missingDependencies = new HashMap<>();
+        final Map<ViaProxyPlugin, List<ViaProxyPlugin>> dependents = new HashMap<>();
+        final PriorityQueue<ViaProxyPlugin> ready = new PriorityQueue<>(Comparator.comparing((ViaProxyPlugin plugin) -> plugin.getName().toLowerCase(Locale.ROOT)));
+        for (ViaProxyPlugin plugin : plugins) {
+            int count = 0;
+            for (String depend : plugin.getDepends()) {
+                final ViaProxyPlugin dependPlugin = pluginsByName.get(depend.toLowerCase(Locale.ROOT));
+                if (dependPlugin == null) {
+                    Logger.LOGGER.error("Plugin '" + plugin.getName() + "' depends on '" + depend + "' which is not loaded");
+                    count = -1;
+                    break;
+                }
+                dependents.computeIfAbsent(dependPlugin, k -> new ArrayList<>()).add(plugin);
+                count++;
+            }
+            if (count == 0) {
+                ready.add(plugin);
+            } else if (count > 0) {
+                missingDependencies.put(plugin, count);
             }
         }
+
+        final List<ViaProxyPlugin> sorted = new ArrayList<>(plugins.size());
+        while (!ready.isEmpty()) {
+            final ViaProxyPlugin plugin = ready.poll();
+            sorted.add(plugin);
+            for (ViaProxyPlugin dependent : dependents.getOrDefault(plugin, Collections.emptyList())) {
+                if (missingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+                    missingDependencies.remove(dependent);
+                    ready.add(dependent);
+                }
+            }
+        }
+        for (ViaProxyPlugin plugin : plugins) {
+            if (!sorted.contains(plugin)) {
+                if (missingDependencies.containsKey(plugin)) {
+                    Logger.LOGGER.error("Plugin '" + plugin.getName() + "' has a cyclic or unresolvable dependency");
+                }
+                sorted.add(plugin);
+            }
+        }
+        return sorted;
     }
 
-    private void loadAndScanJar(final File file) throws Throwable {
+    private ScannedJar scanJar(final File file) throws Exception {
+        final long start = System.currentTimeMillis();
         final URL url = file.toURI().toURL();
-        final TransformerManager transformerManager = new TransformerManager(new LazyFileClassProvider(Collections.singletonList(file), this.rootClassProvider));
+        final CachingTransformerManager transformerManager = new CachingTransformerManager(new LazyFileClassProvider(Collections.singletonList(file), this.rootClassProvider), "plugin-" + file.getName(), file.length() + "|" + file.lastModified() + "|" + System.getProperty("java.class.version"));
         final InjectionClassLoader classLoader = new InjectionClassLoader(transformerManager, PluginManager.class.getClassLoader(), url);
 
         try {
@@ -110,7 +190,7 @@ public class PluginManager {
 
         final InputStream viaproxyYml = classLoader.getResourceAsStream("viaproxy.yml");
         if (viaproxyYml == null) throw new IllegalStateException("Plugin '" + file.getName() + "' does not have a viaproxy.yml");
-        final Map<String, Object> yaml = this.yaml.load(viaproxyYml);
+        final Map<String, Object> yaml = new Yaml().load(viaproxyYml); // Yaml instances are not thread safe
         if (!yaml.containsKey("name")) throw new IllegalStateException("Plugin '" + file.getName() + "' does not have a name attribute in the viaproxy.yml");
         if (!yaml.containsKey("author")) throw new IllegalStateException("Plugin '" + file.getName() + "' does not have a author attribute in the viaproxy.yml");
         if (!yaml.containsKey("version")) throw new IllegalStateException("Plugin '" + file.getName() + "' does not have a version attribute in the viaproxy.yml");
@@ -120,35 +200,38 @@ public class PluginManager {
             throw new IllegalStateException("Plugin '" + file.getName() + "' requires a newer version of ViaProxy (v" + minVersion + ")");
         }
 
-        final String main = (String) yaml.get("main");
+        return new ScannedJar(file, classLoader, yaml, System.currentTimeMillis() - start);
+    }
+
+    private ViaProxyPlugin loadPlugin(final ScannedJar scannedJar) throws Throwable {
+        final long start = System.currentTimeMillis();
+        final String main = (String) scannedJar.yaml().get("main");
 
-        final Class<?> mainClass = classLoader.loadClass(main);
+        final Class<?> mainClass = scannedJar.classLoader().loadClass(main);
         if (!ViaProxyPlugin.class.isAssignableFrom(mainClass)) {
-            throw new IllegalStateException("Class '" + mainClass.getName() + "' from '" + file.getName() + "' does not extend ViaProxyPlugin");
+            throw new IllegalStateException("Class '" + mainClass.getName() + "' from '" + scannedJar.file().getName() + "' does not extend ViaProxyPlugin");
         }
         final Object instance = mainClass.getDeclaredConstructor().newInstance();
         final ViaProxyPlugin plugin = (ViaProxyPlugin) instance;
 
-        plugin.init(classLoader, yaml);
+        plugin.init(scannedJar.classLoader(), scannedJar.yaml());
 
         if (plugin.getDepends().size() > 1) {
-            throw new IllegalStateException("Plugin '" + file.getName() + "' has more than one dependency. This is not supported yet.");
+            throw new IllegalStateException("Plugin '" + scannedJar.file().getName() + "' has more than one dependency. This is not supported yet.");
         }
 
-        Logger.LOGGER.info("Loaded plugin '" + plugin.getName() + "' by " + plugin.getAuthor() + " (v" + plugin.getVersion() + ")");
-        this.plugins.add(plugin);
+        Logger.LOGGER.info("Loaded plugin '" + plugin.getName() + "' by " + plugin.getAuthor() + " (v" + plugin.getVersion() + ") in " + (scannedJar.scanMillis() + System.currentTimeMillis() - start) + "ms");
+        return plugin;
     }
 
     private void enablePlugin(final ViaProxyPlugin plugin) {
+        // Dependencies come before their dependents in the plugin list, so they have been enabled already
         for (String depend : plugin.getDepends()) {
             final ViaProxyPlugin dependPlugin = this.getPlugin(depend);
-            if (dependPlugin == null) {
-                Logger.LOGGER.error("Plugin '" + plugin.getName() + "' depends on '" + depend + "' which is not loaded");
+            if (dependPlugin == null || !dependPlugin.isEnabled()) {
+                Logger.LOGGER.error("Plugin '" + plugin.getName() + "' depends on '" + depend + "' which is not enabled");
                 return;
             }
-            if (!dependPlugin.isEnabled()) {
-                this.enablePlugin(dependPlugin);
-            }
 
             RStream.of(plugin.getClassLoader()).withSuper().fields().by("parent").set(dependPlugin.getClassLoader());
         }
@@ -162,7 +245,9 @@ public class PluginManager {
     }
 
     private void unloadPlugins() {
-        for (ViaProxyPlugin plugin : this.plugins) {
+        // Disable the dependents before their dependencies
+        for (int i = this.plugins.size() - 1; i >= 0; i--) {
+            final ViaProxyPlugin plugin = this.plugins.get(i);
             if (plugin.isEnabled()) {
                 this.disablePlugin(plugin);
             }
@@ -170,17 +255,6 @@ public class PluginManager {
     }
 
     private void disablePlugin(final ViaProxyPlugin plugin) {
-        for (String depend : plugin.getDepends()) {
-            final ViaProxyPlugin dependPlugin = this.getPlugin(depend);
-            if (dependPlugin == null) {
-                Logger.LOGGER.error("Plugin '" + plugin.getName() + "' depends on '" + depend + "' which is not loaded");
-                return;
-            }
-            if (dependPlugin.isEnabled()) {
-                this.disablePlugin(dependPlugin);
-            }
-        }
-
         try {
             plugin.disable();
             Logger.LOGGER.info("Disabled plugin '" + plugin.getName() + "'");
@@ -189,4 +263,7 @@ public class PluginManager {
         }
     }
 
+    private record ScannedJar(File file, InjectionClassLoader classLoader, Map<String, Object> yaml, long scanMillis) {
+    }
+
 }
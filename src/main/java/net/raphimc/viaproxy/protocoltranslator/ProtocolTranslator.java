@@ -20,6 +20,9 @@ package net.raphimc.viaproxy.protocoltranslator;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
 import com.viaversion.viaversion.api.protocol.version.VersionType;
 import com.viaversion.viaversion.protocols.v1_20_3to1_20_5.Protocol1_20_3To1_20_5;
+import net.raphimc.viaaprilfools.api.AprilFoolsProtocolVersion;
+import net.raphimc.viabedrock.api.BedrockProtocolVersion;
+import net.raphimc.vialegacy.api.LegacyProtocolVersion;
 import net.raphimc.vialoader.ViaLoader;
 import net.raphimc.vialoader.impl.platform.ViaAprilFoolsPlatformImpl;
 import net.raphimc.vialoader.impl.platform.ViaBackwardsPlatformImpl;
@@ -30,13 +33,19 @@ import net.raphimc.viaproxy.plugins.events.ProtocolTranslatorInitEvent;
 import net.raphimc.viaproxy.protocoltranslator.impl.ViaProxyVLLoader;
 import net.raphimc.viaproxy.protocoltranslator.impl.ViaProxyViaLegacyPlatformImpl;
 import net.raphimc.viaproxy.protocoltranslator.impl.ViaProxyViaVersionPlatformImpl;
+import net.raphimc.viaproxy.util.ProtocolVersionUtil;
+import net.raphimc.viaproxy.util.logging.Logger;
+import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
-import java.util.Comparator;
+import java.util.*;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class ProtocolTranslator {
 
@@ -60,12 +69,150 @@ public class ProtocolTranslator {
         }
     };
 
+    private static final Set<String> LOADED_PLATFORMS = new LinkedHashSet<>();
+    /**
+     * Logs the heap retained by each platform. Every measurement runs a full GC, so this slows down the startup and is only enabled on request.
+     */
+    private static final boolean MEASURE_HEAP = System.getProperty("measureProtocolTranslatorHeap") != null;
+
     public static void init() {
+        init(null);
+    }
+
+    /**
+     * Initializes the protocol translators.<br>
+     * If target versions are given, the ViaLegacy, ViaAprilFools and ViaBedrock platforms are skipped if none of those versions requires them.
+     * This only works per platform: ViaVersion, ViaBackwards and ViaRewind are always loaded with all their protocols and mapping data, and a skipped platform can't be loaded later without a restart.
+     *
+     * @param targetVersionNames The configured target versions (Including the versions of the hostname routes) or null to load all platforms
+     */
+    public static void init(final List<String> targetVersionNames) {
         patchConfigs();
-        final Supplier<?>[] platformSuppliers = ViaProxy.EVENT_MANAGER.call(new ProtocolTranslatorInitEvent(ViaBackwardsPlatformImpl::new, ViaRewindPlatformImpl::new, ViaProxyViaLegacyPlatformImpl::new, ViaAprilFoolsPlatformImpl::new, ViaBedrockPlatformImpl::new)).getPlatformSuppliers().toArray(new Supplier[0]);
+        List<ProtocolVersion> targetVersions = null;
+        if (targetVersionNames != null) {
+            targetVersions = new ArrayList<>();
+            for (String targetVersionName : targetVersionNames) {
+                final ProtocolVersion targetVersion = resolveTargetVersion(targetVersionName);
+                if (targetVersion == null) {
+                    Logger.LOGGER.warn("Unknown target version '" + targetVersionName + "'. Loading all protocol translators.");
+                    targetVersions = null;
+                    break;
+                }
+                targetVersions.add(targetVersion);
+            }
+        }
+        final boolean loadAll = targetVersions == null;
+
+        final List<Supplier<?>> defaultPlatformSuppliers = new ArrayList<>();
+        defaultPlatformSuppliers.add(measured("ViaBackwards", ViaBackwardsPlatformImpl::new));
+        defaultPlatformSuppliers.add(measured("ViaRewind", ViaRewindPlatformImpl::new));
+        if (loadAll || targetVersions.stream().anyMatch(LegacyProtocolVersion.PROTOCOLS::contains)) {
+            defaultPlatformSuppliers.add(measured("ViaLegacy", ViaProxyViaLegacyPlatformImpl::new));
+        }
+        if (loadAll || targetVersions.stream().anyMatch(AprilFoolsProtocolVersion.PROTOCOLS::contains)) {
+            defaultPlatformSuppliers.add(measured("ViaAprilFools", ViaAprilFoolsPlatformImpl::new));
+        }
+        if (loadAll || targetVersions.stream().anyMatch(BedrockProtocolVersion.PROTOCOLS::contains)) {
+            defaultPlatformSuppliers.add(measured("ViaBedrock", ViaBedrockPlatformImpl::new));
+        }
+        if (!loadAll) {
+            Logger.LOGGER.info("Skipping the protocol translator platforms which are not required for " + targetVersions.stream().map(ProtocolVersion::getName).distinct().collect(Collectors.joining(", ")) + " (ViaVersion, ViaBackwards and ViaRewind are always loaded)");
+        }
+
+        final Supplier<?>[] platformSuppliers = ViaProxy.EVENT_MANAGER.call(new ProtocolTranslatorInitEvent(defaultPlatformSuppliers.toArray(new Supplier[0]))).getPlatformSuppliers().toArray(new Supplier[0]);
+        final long retainedHeap = MEASURE_HEAP ? getRetainedHeap() : 0;
         ViaLoader.init(new ViaProxyViaVersionPlatformImpl(), new ViaProxyVLLoader(), null, null, platformSuppliers);
         Protocol1_20_3To1_20_5.strictErrorHandling = false;
         ProtocolVersion.register(AUTO_DETECT_PROTOCOL);
+        LOADED_PLATFORMS.add("ViaVersion");
+        if (MEASURE_HEAP) {
+            Logger.LOGGER.info("Protocol translators retain " + (getRetainedHeap() - retainedHeap) / (1024 * 1024) + "MB heap");
+        }
+    }
+
+    /**
+     * @param version The target version
+     * @return If the protocol translators required for the given target version are loaded
+     */
+    public static boolean isSupported(final ProtocolVersion version) {
+        if (LegacyProtocolVersion.PROTOCOLS.contains(version)) return LOADED_PLATFORMS.contains("ViaLegacy");
+        if (AprilFoolsProtocolVersion.PROTOCOLS.contains(version)) return LOADED_PLATFORMS.contains("ViaAprilFools");
+        if (BedrockProtocolVersion.PROTOCOLS.contains(version)) return LOADED_PLATFORMS.contains("ViaBedrock");
+        return true;
+    }
+
+    /**
+     * @return If all protocol translators are loaded
+     */
+    public static boolean isFullyLoaded() {
+        return LOADED_PLATFORMS.containsAll(List.of("ViaLegacy", "ViaAprilFools", "ViaBedrock"));
+    }
+
+    /**
+     * Reads the target versions from the config file without loading the config.<br>
+     * This includes the target version and the versions of all hostname routes.
+     *
+     * @param configFile The config file
+     * @return The target version names or null if all versions can be used (Missing file or option, wildcard domain handling enabled)
+     */
+    public static List<String> readTargetVersions(final File configFile) {
+        if (!configFile.isFile()) return null;
+        try (Reader reader = Files.newBufferedReader(configFile.toPath())) {
+            final Object config = new Yaml().load(reader);
+            if (!(config instanceof Map<?, ?> map) || map.get("target-version") == null) {
+                return null;
+            }
+            if (map.get("wildcard-domain-handling") != null && !map.get("wildcard-domain-handling").toString().equalsIgnoreCase("none")) {
+                return null; // Clients can choose the version
+            }
+
+            final List<String> targetVersions = new ArrayList<>();
+            targetVersions.add(map.get("target-version").toString());
+            if (map.get("routes") instanceof Map<?, ?> routes) {
+                for (Object route : routes.values()) {
+                    if (route instanceof Map<?, ?> routeMap && routeMap.get("version") != null) {
+                        targetVersions.add(routeMap.get("version").toString());
+                    }
+                }
+            }
+            return targetVersions;
+        } catch (Throwable e) {
+            Logger.LOGGER.warn("Failed to read the target versions from " + configFile.getName() + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static ProtocolVersion resolveTargetVersion(final String name) {
+        if (name.equals(AUTO_DETECT_PROTOCOL.getName())) return AUTO_DETECT_PROTOCOL;
+        // Accessing the version lists registers the versions of the platforms
+        if (LegacyProtocolVersion.PROTOCOLS.isEmpty() || AprilFoolsProtocolVersion.PROTOCOLS.isEmpty() || BedrockProtocolVersion.PROTOCOLS.isEmpty()) {
+            return null;
+        }
+        return ProtocolVersionUtil.fromNameLenient(name);
+    }
+
+    private static Supplier<?> measured(final String name, final Supplier<?> platformSupplier) {
+        return () -> {
+            final long retainedHeap = MEASURE_HEAP ? getRetainedHeap() : 0;
+            final long start = System.currentTimeMillis();
+            final Object platform = platformSupplier.get();
+            final long time = System.currentTimeMillis() - start;
+            LOADED_PLATFORMS.add(name);
+            if (MEASURE_HEAP) {
+                Logger.LOGGER.info("Loaded " + name + " in " + time + "ms (" + (getRetainedHeap() - retainedHeap) / 1024 + "KB heap retained)");
+            } else {
+                Logger.LOGGER.info("Loaded " + name + " in " + time + "ms");
+            }
+            return platform;
+        };
+    }
+
+    /**
+     * @return The used heap after a full GC, so only reachable objects are counted
+     */
+    private static long getRetainedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
     }
 
     private static void patchConfigs() {
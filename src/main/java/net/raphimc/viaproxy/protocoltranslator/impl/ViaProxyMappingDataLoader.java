@@ -20,44 +20,149 @@ package net.raphimc.viaproxy.protocoltranslator.impl;
 
 import com.viaversion.viaversion.api.data.MappingDataLoader;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
-import com.viaversion.viaversion.libs.gson.JsonElement;
-import com.viaversion.viaversion.libs.gson.JsonObject;
+import net.raphimc.viaproxy.util.logging.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ViaProxyMappingDataLoader extends MappingDataLoader {
 
+    private static final String DATA_PATH = "assets/viaproxy/data/";
+    private static final int BINARY_MAGIC = 0x56504D44; // VPMD
+    private static final int BINARY_FORMAT_VERSION = 1;
+
     public static final Map<String, Material> MATERIALS = new HashMap<>();
     public static final Map<String, Map<ProtocolVersion, String>> BLOCK_MATERIALS = new HashMap<>();
+    /**
+     * All blocks which have the material (key) up to the given version. Avoids scanning all blocks when resolving a material.
+     */
+    public static final Map<String, List<MaterialBlock>> MATERIAL_BLOCKS = new HashMap<>();
 
     public static final ViaProxyMappingDataLoader INSTANCE = new ViaProxyMappingDataLoader();
 
     private ViaProxyMappingDataLoader() {
-        super(ViaProxyMappingDataLoader.class, "assets/viaproxy/data/");
-
-        final JsonObject materialsData = this.loadData("materials-1.19.4.json");
-        for (Map.Entry<String, JsonElement> entry : materialsData.getAsJsonObject("materials").entrySet()) {
-            final JsonObject materialData = entry.getValue().getAsJsonObject();
-            MATERIALS.put(entry.getKey(), new Material(
-                    materialData.get("blocksMovement").getAsBoolean(),
-                    materialData.get("burnable").getAsBoolean(),
-                    materialData.get("liquid").getAsBoolean(),
-                    materialData.get("blocksLight").getAsBoolean(),
-                    materialData.get("replaceable").getAsBoolean(),
-                    materialData.get("solid").getAsBoolean()
+        super(ViaProxyMappingDataLoader.class, DATA_PATH);
+
+        final long start = System.nanoTime();
+        readMaterials(this.loadBinaryData("materials-1.19.4.bin"), MATERIALS, BLOCK_MATERIALS, MATERIAL_BLOCKS);
+        Logger.LOGGER.info("Loaded " + MATERIALS.size() + " materials and " + BLOCK_MATERIALS.size() + " block materials in " + (System.nanoTime() - start) / 1_000_000F + "ms");
+    }
+
+    /**
+     * Reads the compiled materials data into the given maps.
+     *
+     * @param materialsData  The compiled materials data
+     * @param materials      The materials by name
+     * @param blockMaterials The materials of each block by version
+     * @param materialBlocks The blocks of each material (see {@link #MATERIAL_BLOCKS})
+     */
+    static void readMaterials(final BinaryData materialsData, final Map<String, Material> materials, final Map<String, Map<ProtocolVersion, String>> blockMaterials, final Map<String, List<MaterialBlock>> materialBlocks) {
+        final int materialCount = materialsData.readInt();
+        for (int i = 0; i < materialCount; i++) {
+            final String name = materialsData.readString();
+            final int flags = materialsData.readByte();
+            materials.put(name, new Material(
+                    (flags & 1) != 0,
+                    (flags & 2) != 0,
+                    (flags & 4) != 0,
+                    (flags & 8) != 0,
+                    (flags & 16) != 0,
+                    (flags & 32) != 0
             ));
         }
-        for (Map.Entry<String, JsonElement> blockEntry : materialsData.getAsJsonObject("blocks").entrySet()) {
-            final Map<ProtocolVersion, String> blockMaterials = new HashMap<>();
-            for (Map.Entry<String, JsonElement> entry : blockEntry.getValue().getAsJsonObject().entrySet()) {
-                blockMaterials.put(ProtocolVersion.getClosest(entry.getKey()), entry.getValue().getAsString());
+        final int blockCount = materialsData.readInt();
+        for (int i = 0; i < blockCount; i++) {
+            final String block = materialsData.readString();
+            final int versionCount = materialsData.readInt();
+            final Map<ProtocolVersion, String> versionMaterials = new HashMap<>(versionCount);
+            for (int j = 0; j < versionCount; j++) {
+                final ProtocolVersion version = ProtocolVersion.getClosest(materialsData.readString());
+                final String material = materialsData.readString();
+                versionMaterials.put(version, material);
+                materialBlocks.computeIfAbsent(material, k -> new ArrayList<>()).add(new MaterialBlock(block, version));
+            }
+            blockMaterials.put(block, versionMaterials);
+        }
+    }
+
+    /**
+     * Loads a data file which has been compiled by the compileMappingData gradle task.
+     *
+     * @param name The name of the file
+     * @return The binary data
+     */
+    public BinaryData loadBinaryData(final String name) {
+        try (InputStream is = ViaProxyMappingDataLoader.class.getClassLoader().getResourceAsStream(DATA_PATH + name)) {
+            if (is == null) throw new IllegalStateException("Missing mapping data file: " + name);
+            final ByteBuffer buffer = ByteBuffer.wrap(is.readAllBytes());
+            if (buffer.getInt() != BINARY_MAGIC) throw new IllegalStateException("Invalid mapping data file: " + name);
+            if (buffer.getInt() != BINARY_FORMAT_VERSION) throw new IllegalStateException("Unsupported mapping data format version: " + name);
+            final String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
             }
-            BLOCK_MATERIALS.put(blockEntry.getKey(), blockMaterials);
+            return new BinaryData(buffer, strings);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load mapping data file: " + name, e);
         }
     }
 
     public record Material(boolean blocksMovement, boolean burnable, boolean liquid, boolean blocksLight, boolean replaceable, boolean solid) {
     }
 
+    /**
+     * @param block        The block identifier
+     * @param untilVersion The newest version in which the block has the material
+     */
+    public record MaterialBlock(String block, ProtocolVersion untilVersion) {
+    }
+
+    /**
+     * Compiled data file: A header (magic, format version), a string table and the data.<br>
+     * Strings in the data are stored as indices into the string table, so every string is only decoded once.
+     */
+    public static class BinaryData {
+
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        private BinaryData(final ByteBuffer buffer, final String[] strings) {
+            this.buffer = buffer;
+            this.strings = strings;
+        }
+
+        public int readByte() {
+            return this.buffer.get() & 0xFF;
+        }
+
+        public int readInt() {
+            return this.buffer.getInt();
+        }
+
+        public float readFloat() {
+            return this.buffer.getFloat();
+        }
+
+        public String readString() {
+            return this.strings[this.buffer.getInt()];
+        }
+
+        public String[] readStringArray() {
+            final String[] array = new String[this.buffer.getInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = this.readString();
+            }
+            return array;
+        }
+
+    }
+
 }
@@ -20,18 +20,21 @@ package net.raphimc.viaproxy.protocoltranslator.impl;
 import com.viaversion.viaversion.api.connection.UserConnection;
 import io.netty.channel.ChannelHandlerContext;
 import net.raphimc.vialoader.netty.ViaCodec;
-import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.proxy.session.ProxyConnection;
 import net.raphimc.viaproxy.util.logging.Logger;
 
 public class ViaProxyViaCodec extends ViaCodec {
 
+    private final boolean ignoreProtocolTranslationErrors;
+
     public ViaProxyViaCodec(UserConnection user) {
         super(user);
+        this.ignoreProtocolTranslationErrors = ProxyConnection.fromUserConnection(user).getConfig().shouldIgnoreProtocolTranslationErrors();
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        if (ViaProxy.getConfig().shouldIgnoreProtocolTranslationErrors()) {
+        if (this.ignoreProtocolTranslationErrors) {
             try {
                 super.channelRead(ctx, msg);
             } catch (Throwable e) {
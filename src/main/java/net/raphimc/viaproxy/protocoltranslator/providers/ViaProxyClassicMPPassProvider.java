@@ -24,7 +24,6 @@ import com.viaversion.viaversion.api.connection.UserConnection;
 import net.raphimc.vialegacy.protocol.classic.c0_28_30toa1_0_15.provider.ClassicMPPassProvider;
 import net.raphimc.vialegacy.protocol.release.r1_2_4_5tor1_3_1_2.provider.OldAuthProvider;
 import net.raphimc.vialegacy.protocol.release.r1_6_4tor1_7_2_5.storage.HandshakeStorage;
-import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
 
 import java.net.InetAddress;
@@ -36,10 +35,11 @@ public class ViaProxyClassicMPPassProvider extends ClassicMPPassProvider {
 
     @Override
     public String getMpPass(UserConnection user) {
-        final String mppass = ProxyConnection.fromUserConnection(user).getUserOptions().classicMpPass();
+        final ProxyConnection proxyConnection = ProxyConnection.fromUserConnection(user);
+        final String mppass = proxyConnection.getUserOptions().classicMpPass();
         if (mppass != null && !mppass.isEmpty() && !mppass.equals("0")) {
             return mppass;
-        } else if (ViaProxy.getConfig().useBetacraftAuth()) {
+        } else if (proxyConnection.getConfig().useBetacraftAuth()) {
             final HandshakeStorage handshakeStorage = user.get(HandshakeStorage.class);
             return getBetacraftMpPass(user, user.getProtocolInfo().getUsername(), handshakeStorage.getHostname(), handshakeStorage.getPort());
         } else {
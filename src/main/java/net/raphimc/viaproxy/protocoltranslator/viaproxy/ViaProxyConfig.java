@@ -17,16 +17,12 @@
  */
 package net.raphimc.viaproxy.protocoltranslator.viaproxy;
 
-import com.google.common.collect.Iterables;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
 import com.viaversion.viaversion.util.Config;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
-import net.raphimc.minecraftauth.MinecraftAuth;
-import net.raphimc.minecraftauth.service.realms.JavaRealmsService;
-import net.raphimc.minecraftauth.service.realms.model.RealmsWorld;
 import net.raphimc.vialoader.util.JLoggerToSLF4J;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.cli.BetterHelpFormatter;
@@ -35,9 +31,11 @@ import net.raphimc.viaproxy.cli.ProtocolVersionConverter;
 import net.raphimc.viaproxy.plugins.events.PostOptionsParseEvent;
 import net.raphimc.viaproxy.plugins.events.PreOptionsParseEvent;
 import net.raphimc.viaproxy.protocoltranslator.ProtocolTranslator;
+import net.raphimc.viaproxy.proxy.util.HostnameRouter;
+import net.raphimc.viaproxy.realms.RealmsResolver;
 import net.raphimc.viaproxy.saves.impl.accounts.Account;
-import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
 import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.ProtocolVersionUtil;
 import net.raphimc.viaproxy.util.logging.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,7 +45,9 @@ import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -77,14 +77,29 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
     private final OptionSpec<String> optionCustomMotd;
     private final OptionSpec<String> optionResourcePackUrl;
     private final OptionSpec<WildcardDomainHandling> optionWildcardDomainHandling;
+    private final OptionSpec<LoadBalancingStrategy> optionLoadBalancingStrategy;
+    private final OptionSpec<Integer> optionBackendHealthCheckInterval;
     private final OptionSpec<Boolean> optionSimpleVoiceChatSupport;
     private final OptionSpec<Boolean> optionFakeAcceptResourcePacks;
+    private final OptionSpec<Integer> optionBackendConnectionPoolSize;
+    private final OptionSpec<Integer> optionBackendConnectionPoolIdleTimeout;
+    private final OptionSpec<Integer> optionStatusCacheTtl;
+    private final OptionSpec<Integer> optionRateLimitConnectionsPerIp;
+    private final OptionSpec<Integer> optionRateLimitConnectionsGlobal;
+    private final OptionSpec<Integer> optionRateLimitStatusPerIp;
+    private final OptionSpec<Integer> optionRateLimitLoginsPerIp;
+    private final OptionSpec<Integer> optionRateLimitIpv6PrefixLength;
+    private final OptionSpec<Integer> optionHttpMaxConcurrentRequests;
 
     private SocketAddress bindAddress = AddressUtil.parse("0.0.0.0:25568", null);
     private SocketAddress targetAddress = AddressUtil.parse("127.0.0.1:25565", null);
+    private Map<SocketAddress, Integer> targetAddresses = null;
     private ProtocolVersion targetVersion = ProtocolTranslator.AUTO_DETECT_PROTOCOL;
     private boolean proxyOnlineMode = false;
     private boolean useRealms = false;
+    private int realmsPrewakeInterval = 0;
+    private RealmsPrewakeMode realmsPrewakeMode = RealmsPrewakeMode.JOIN;
+    private RealmsResolver.PrewakeSchedule realmsPrewakeSchedule = RealmsResolver.PrewakeSchedule.ALWAYS;
     private AuthMethod authMethod = AuthMethod.NONE;
     private Account account = null;
     private boolean betacraftAuth = false;
@@ -100,8 +115,20 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
     private String customMotd = "";
     private String resourcePackUrl = "";
     private WildcardDomainHandling wildcardDomainHandling = WildcardDomainHandling.NONE;
+    private LoadBalancingStrategy loadBalancingStrategy = LoadBalancingStrategy.LEAST_CONNECTIONS;
+    private HostnameRouter hostnameRouter = HostnameRouter.EMPTY;
+    private int backendHealthCheckInterval = 10;
     private boolean simpleVoiceChatSupport = false;
     private boolean fakeAcceptResourcePacks = false;
+    private int backendConnectionPoolSize = 0;
+    private int backendConnectionPoolIdleTimeout = 15;
+    private int statusCacheTtl = 0;
+    private int rateLimitConnectionsPerIp = 0;
+    private int rateLimitConnectionsGlobal = 0;
+    private int rateLimitStatusPerIp = 0;
+    private int rateLimitLoginsPerIp = 0;
+    private int rateLimitIpv6PrefixLength = 64;
+    private int httpMaxConcurrentRequests = 8;
 
     public ViaProxyConfig(final File configFile) {
         super(configFile, LOGGER);
@@ -127,8 +154,19 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         this.optionCustomMotd = this.optionParser.accepts("custom-motd").withRequiredArg().ofType(String.class).defaultsTo(this.customMotd);
         this.optionResourcePackUrl = this.optionParser.accepts("resource-pack-url").withRequiredArg().ofType(String.class).defaultsTo(this.resourcePackUrl);
         this.optionWildcardDomainHandling = this.optionParser.accepts("wildcard-domain-handling").withRequiredArg().ofType(WildcardDomainHandling.class).defaultsTo(this.wildcardDomainHandling);
+        this.optionLoadBalancingStrategy = this.optionParser.accepts("load-balancing-strategy").withRequiredArg().ofType(LoadBalancingStrategy.class).defaultsTo(this.loadBalancingStrategy);
+        this.optionBackendHealthCheckInterval = this.optionParser.accepts("backend-health-check-interval").withRequiredArg().ofType(Integer.class).defaultsTo(this.backendHealthCheckInterval);
         this.optionSimpleVoiceChatSupport = this.optionParser.accepts("simple-voice-chat-support").withRequiredArg().ofType(Boolean.class).defaultsTo(this.simpleVoiceChatSupport);
         this.optionFakeAcceptResourcePacks = this.optionParser.accepts("fake-accept-resource-packs").withRequiredArg().ofType(Boolean.class).defaultsTo(this.fakeAcceptResourcePacks);
+        this.optionBackendConnectionPoolSize = this.optionParser.accepts("backend-connection-pool-size").withRequiredArg().ofType(Integer.class).defaultsTo(this.backendConnectionPoolSize);
+        this.optionBackendConnectionPoolIdleTimeout = this.optionParser.accepts("backend-connection-pool-idle-timeout").withRequiredArg().ofType(Integer.class).defaultsTo(this.backendConnectionPoolIdleTimeout);
+        this.optionStatusCacheTtl = this.optionParser.accepts("status-cache-ttl").withRequiredArg().ofType(Integer.class).defaultsTo(this.statusCacheTtl);
+        this.optionRateLimitConnectionsPerIp = this.optionParser.accepts("rate-limit-connections-per-ip").withRequiredArg().ofType(Integer.class).defaultsTo(this.rateLimitConnectionsPerIp);
+        this.optionRateLimitConnectionsGlobal = this.optionParser.accepts("rate-limit-connections-global").withRequiredArg().ofType(Integer.class).defaultsTo(this.rateLimitConnectionsGlobal);
+        this.optionRateLimitStatusPerIp = this.optionParser.accepts("rate-limit-status-per-ip").withRequiredArg().ofType(Integer.class).defaultsTo(this.rateLimitStatusPerIp);
+        this.optionRateLimitLoginsPerIp = this.optionParser.accepts("rate-limit-logins-per-ip").withRequiredArg().ofType(Integer.class).defaultsTo(this.rateLimitLoginsPerIp);
+        this.optionRateLimitIpv6PrefixLength = this.optionParser.accepts("rate-limit-ipv6-prefix-length").withRequiredArg().ofType(Integer.class).defaultsTo(this.rateLimitIpv6PrefixLength);
+        this.optionHttpMaxConcurrentRequests = this.optionParser.accepts("http-max-concurrent-requests").withRequiredArg().ofType(Integer.class).defaultsTo(this.httpMaxConcurrentRequests);
     }
 
     @Override
@@ -140,9 +178,7 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
                 .getClosest(this.getString("target-version", this.targetVersion.getName()));
         this.useRealms = this.getBoolean("use-realms", this.useRealms);
         if (!this.useRealms) {
-            this.targetAddress = AddressUtil
-                    .parse(this.getString("target-address", AddressUtil.toString(this.targetAddress)),
-                            this.targetVersion);
+            this.parseTargetAddresses(this.getString("target-address", AddressUtil.toString(this.targetAddress)));
         }
         this.proxyOnlineMode = this.getBoolean("proxy-online-mode", this.proxyOnlineMode);
         this.authMethod = AuthMethod.byName(this.getString("auth-method", this.authMethod.name()));
@@ -154,9 +190,6 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
             this.account = null;
         }
 
-        if (this.useRealms) {
-            hackLoadRealms();
-        }
         this.checkTargetVersion();
         this.betacraftAuth = this.getBoolean("betacraft-auth", this.betacraftAuth);
         this.backendProxyUrl = this.parseProxyUrl(this.getString("backend-proxy-url", ""));
@@ -171,60 +204,57 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         this.customMotd = this.getString("custom-motd", this.customMotd);
         this.resourcePackUrl = this.getString("resource-pack-url", this.resourcePackUrl);
         this.wildcardDomainHandling = WildcardDomainHandling.byName(this.getString("wildcard-domain-handling", this.wildcardDomainHandling.name()));
+        this.loadBalancingStrategy = LoadBalancingStrategy.byName(this.getString("load-balancing-strategy", this.loadBalancingStrategy.name()));
+        this.hostnameRouter = this.parseRoutes(this.getValues().get("routes"));
+        this.backendHealthCheckInterval = this.getInt("backend-health-check-interval", this.backendHealthCheckInterval);
         this.simpleVoiceChatSupport = this.getBoolean("simple-voice-chat-support", this.simpleVoiceChatSupport);
         this.fakeAcceptResourcePacks = this.getBoolean("fake-accept-resource-packs", this.fakeAcceptResourcePacks);
+        this.backendConnectionPoolSize = this.getInt("backend-connection-pool-size", this.backendConnectionPoolSize);
+        this.backendConnectionPoolIdleTimeout = this.getInt("backend-connection-pool-idle-timeout", this.backendConnectionPoolIdleTimeout);
+        this.statusCacheTtl = this.getInt("status-cache-ttl", this.statusCacheTtl);
+        this.rateLimitConnectionsPerIp = this.getInt("rate-limit-connections-per-ip", this.rateLimitConnectionsPerIp);
+        this.rateLimitConnectionsGlobal = this.getInt("rate-limit-connections-global", this.rateLimitConnectionsGlobal);
+        this.rateLimitStatusPerIp = this.getInt("rate-limit-status-per-ip", this.rateLimitStatusPerIp);
+        this.rateLimitLoginsPerIp = this.getInt("rate-limit-logins-per-ip", this.rateLimitLoginsPerIp);
+        this.rateLimitIpv6PrefixLength = this.getInt("rate-limit-ipv6-prefix-length", this.rateLimitIpv6PrefixLength);
+        this.httpMaxConcurrentRequests = this.getInt("http-max-concurrent-requests", this.httpMaxConcurrentRequests);
+
+        if (this.useRealms) {
+            if (this.account == null) {
+                this.logger.severe("use-realms requires a selected Microsoft account (Or a Bedrock account if the target version is Bedrock)");
+            }
+            this.realmsPrewakeInterval = this.getInt("realms-prewake-interval", this.realmsPrewakeInterval);
+            this.realmsPrewakeMode = RealmsPrewakeMode.byName(this.getString("realms-prewake-mode", this.realmsPrewakeMode.name()));
+            try {
+                this.realmsPrewakeSchedule = RealmsResolver.PrewakeSchedule.parse(this.getString("realms-prewake-schedule", ""));
+            } catch (IllegalArgumentException e) {
+                this.logger.warning("Invalid realms-prewake-schedule: " + e.getMessage() + ". Pre-waking the realm at any time.");
+                this.realmsPrewakeSchedule = RealmsResolver.PrewakeSchedule.ALWAYS;
+            }
+        }
     }
 
     /**
-     * HACK: Refreshes the account and attempts to get a matching realm
+     * Starts or stops the Realms resolver according to this config. Kept separate from {@link #reload()}, so a config can be parsed and validated without side effects.
+     *
+     * @param previousConfig The config which was active before or null. The resolver is only restarted if the Realms settings changed.
      */
-    private void hackLoadRealms() {
-        this.logger.info("Recognized useRealms");
-        if (this.account == null) {
-            this.logger.severe("No account to select realms");
-        }
-
-        if (!(account instanceof MicrosoftAccount)) {
-            this.logger.severe("Cannot connect to Realms with a non-microsoft account");
-        }
+    public void applyRealmsSettings(final ViaProxyConfig previousConfig) {
+        if (previousConfig != null && this.getRealmsSettings().equals(previousConfig.getRealmsSettings())) return;
 
-        this.logger.info("Attempting to refresh microsoft account");
-        try {
-            if (!account.refresh()) {
-                throw new Exception();
+        if (this.useRealms) {
+            RealmsResolver.start(this.account, this.targetVersion, this.getString("target-address", ""));
+            if (this.realmsPrewakeInterval > 0) {
+                RealmsResolver.startPrewake(this.realmsPrewakeInterval, this.realmsPrewakeMode == RealmsPrewakeMode.JOIN, this.realmsPrewakeSchedule);
             }
-        } catch (Exception e) {
-            this.logger.severe("Cannot refresh account, quitting...");
+        } else {
+            RealmsResolver.stop();
         }
+    }
 
-        final JavaRealmsService realmsService = new JavaRealmsService(MinecraftAuth.createHttpClient(),
-                Iterables.getLast(this.targetVersion.getIncludedVersions()),
-                ((MicrosoftAccount) account).getMcProfile());
-
-        realmsService.isAvailable().thenAccept(state -> {
-            if (state) {
-                realmsService.getWorlds().thenAccept(worlds -> {
-                    final String joinWithUser = this.getString("target-address", "");
-                    this.logger.info("Will join " + joinWithUser);
-
-                    for (RealmsWorld world : worlds) {
-                        if (!world.getOwnerName().equals(joinWithUser)) {
-                            this.logger.info("Skipping world owned by " + world.getOwnerName());
-                            continue;
-                        }
-                        this.logger.info("Found world owned by " + world.getOwnerName());
-
-                        realmsService.joinWorld(world).thenAccept(address -> {
-                            this.targetAddress = AddressUtil
-                                    .parse(address, this.targetVersion);
-                        }).join();
-                        break;
-                    }
-                }).join();
-            } else {
-                this.logger.severe("Realms have no state");
-            }
-        }).join();
+    private List<Object> getRealmsSettings() {
+        if (!this.useRealms) return List.of(false);
+        return Arrays.asList(true, this.account, this.targetVersion, this.getString("target-address", ""), this.realmsPrewakeInterval, this.realmsPrewakeMode, this.realmsPrewakeSchedule.toString());
     }
 
     public void loadFromArguments(final String[] args) throws IOException {
@@ -237,7 +267,7 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
             this.bindAddress = AddressUtil.parse(options.valueOf(this.optionBindAddress), null);
             this.targetVersion = options.valueOf(this.optionTargetVersion);
             this.checkTargetVersion();
-            this.targetAddress = AddressUtil.parse(options.valueOf(this.optionTargetAddress), this.targetVersion);
+            this.parseTargetAddresses(options.valueOf(this.optionTargetAddress));
             this.proxyOnlineMode = options.valueOf(this.optionProxyOnlineMode);
             this.authMethod = options.valueOf(this.optionAuthMethod);
             final List<Account> accounts = ViaProxy.getSaveManager().accountsSave.getAccounts();
@@ -261,8 +291,19 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
             this.customMotd = options.valueOf(this.optionCustomMotd);
             this.resourcePackUrl = options.valueOf(this.optionResourcePackUrl);
             this.wildcardDomainHandling = options.valueOf(this.optionWildcardDomainHandling);
+            this.loadBalancingStrategy = options.valueOf(this.optionLoadBalancingStrategy);
+            this.backendHealthCheckInterval = options.valueOf(this.optionBackendHealthCheckInterval);
             this.simpleVoiceChatSupport = options.valueOf(this.optionSimpleVoiceChatSupport);
             this.fakeAcceptResourcePacks = options.valueOf(this.optionFakeAcceptResourcePacks);
+            this.backendConnectionPoolSize = options.valueOf(this.optionBackendConnectionPoolSize);
+            this.backendConnectionPoolIdleTimeout = options.valueOf(this.optionBackendConnectionPoolIdleTimeout);
+            this.statusCacheTtl = options.valueOf(this.optionStatusCacheTtl);
+            this.rateLimitConnectionsPerIp = options.valueOf(this.optionRateLimitConnectionsPerIp);
+            this.rateLimitConnectionsGlobal = options.valueOf(this.optionRateLimitConnectionsGlobal);
+            this.rateLimitStatusPerIp = options.valueOf(this.optionRateLimitStatusPerIp);
+            this.rateLimitLoginsPerIp = options.valueOf(this.optionRateLimitLoginsPerIp);
+            this.rateLimitIpv6PrefixLength = options.valueOf(this.optionRateLimitIpv6PrefixLength);
+            this.httpMaxConcurrentRequests = options.valueOf(this.optionHttpMaxConcurrentRequests);
             ViaProxy.EVENT_MANAGER.call(new PostOptionsParseEvent(options));
             return;
         } catch (OptionException e) {
@@ -308,8 +349,16 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         return this.targetAddress;
     }
 
+    /**
+     * @return All configured target addresses with their weights
+     */
+    public Map<SocketAddress, Integer> getTargetAddresses() {
+        return this.targetAddresses != null ? this.targetAddresses : Map.of(this.targetAddress, 1);
+    }
+
     public void setTargetAddress(final SocketAddress targetAddress) {
         this.targetAddress = targetAddress;
+        this.targetAddresses = null;
         this.set("target-address", AddressUtil.toString(targetAddress));
     }
 
@@ -470,6 +519,28 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         this.set("wildcard-domain-handling", wildcardDomainHandling.name().toLowerCase(Locale.ROOT));
     }
 
+    public HostnameRouter getHostnameRouter() {
+        return this.hostnameRouter;
+    }
+
+    public LoadBalancingStrategy getLoadBalancingStrategy() {
+        return this.loadBalancingStrategy;
+    }
+
+    public void setLoadBalancingStrategy(final LoadBalancingStrategy loadBalancingStrategy) {
+        this.loadBalancingStrategy = loadBalancingStrategy;
+        this.set("load-balancing-strategy", loadBalancingStrategy.name().toLowerCase(Locale.ROOT));
+    }
+
+    public int getBackendHealthCheckInterval() {
+        return this.backendHealthCheckInterval;
+    }
+
+    public void setBackendHealthCheckInterval(final int backendHealthCheckInterval) {
+        this.backendHealthCheckInterval = backendHealthCheckInterval;
+        this.set("backend-health-check-interval", backendHealthCheckInterval);
+    }
+
     public boolean shouldSupportSimpleVoiceChat() {
         return this.simpleVoiceChatSupport;
     }
@@ -488,6 +559,87 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         this.set("fake-accept-resource-packs", fakeAcceptResourcePacks);
     }
 
+    public int getBackendConnectionPoolSize() {
+        return this.backendConnectionPoolSize;
+    }
+
+    public void setBackendConnectionPoolSize(final int backendConnectionPoolSize) {
+        this.backendConnectionPoolSize = backendConnectionPoolSize;
+        this.set("backend-connection-pool-size", backendConnectionPoolSize);
+    }
+
+    public int getBackendConnectionPoolIdleTimeout() {
+        return this.backendConnectionPoolIdleTimeout;
+    }
+
+    public void setBackendConnectionPoolIdleTimeout(final int backendConnectionPoolIdleTimeout) {
+        this.backendConnectionPoolIdleTimeout = backendConnectionPoolIdleTimeout;
+        this.set("backend-connection-pool-idle-timeout", backendConnectionPoolIdleTimeout);
+    }
+
+    public int getStatusCacheTtl() {
+        return this.statusCacheTtl;
+    }
+
+    public void setStatusCacheTtl(final int statusCacheTtl) {
+        this.statusCacheTtl = statusCacheTtl;
+        this.set("status-cache-ttl", statusCacheTtl);
+    }
+
+    public int getRateLimitConnectionsPerIp() {
+        return this.rateLimitConnectionsPerIp;
+    }
+
+    public void setRateLimitConnectionsPerIp(final int rateLimitConnectionsPerIp) {
+        this.rateLimitConnectionsPerIp = rateLimitConnectionsPerIp;
+        this.set("rate-limit-connections-per-ip", rateLimitConnectionsPerIp);
+    }
+
+    public int getRateLimitConnectionsGlobal() {
+        return this.rateLimitConnectionsGlobal;
+    }
+
+    public void setRateLimitConnectionsGlobal(final int rateLimitConnectionsGlobal) {
+        this.rateLimitConnectionsGlobal = rateLimitConnectionsGlobal;
+        this.set("rate-limit-connections-global", rateLimitConnectionsGlobal);
+    }
+
+    public int getRateLimitStatusPerIp() {
+        return this.rateLimitStatusPerIp;
+    }
+
+    public void setRateLimitStatusPerIp(final int rateLimitStatusPerIp) {
+        this.rateLimitStatusPerIp = rateLimitStatusPerIp;
+        this.set("rate-limit-status-per-ip", rateLimitStatusPerIp);
+    }
+
+    public int getRateLimitLoginsPerIp() {
+        return this.rateLimitLoginsPerIp;
+    }
+
+    public void setRateLimitLoginsPerIp(final int rateLimitLoginsPerIp) {
+        this.rateLimitLoginsPerIp = rateLimitLoginsPerIp;
+        this.set("rate-limit-logins-per-ip", rateLimitLoginsPerIp);
+    }
+
+    public int getRateLimitIpv6PrefixLength() {
+        return this.rateLimitIpv6PrefixLength;
+    }
+
+    public void setRateLimitIpv6PrefixLength(final int rateLimitIpv6PrefixLength) {
+        this.rateLimitIpv6PrefixLength = rateLimitIpv6PrefixLength;
+        this.set("rate-limit-ipv6-prefix-length", rateLimitIpv6PrefixLength);
+    }
+
+    public int getHttpMaxConcurrentRequests() {
+        return this.httpMaxConcurrentRequests;
+    }
+
+    public void setHttpMaxConcurrentRequests(final int httpMaxConcurrentRequests) {
+        this.httpMaxConcurrentRequests = httpMaxConcurrentRequests;
+        this.set("http-max-concurrent-requests", httpMaxConcurrentRequests);
+    }
+
     private void checkTargetVersion() {
         if (this.targetVersion == null) {
             this.targetVersion = ProtocolTranslator.AUTO_DETECT_PROTOCOL;
@@ -500,6 +652,69 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
         }
     }
 
+    private void parseTargetAddresses(final String targetAddresses) {
+        final Map<SocketAddress, Integer> parsedAddresses = new LinkedHashMap<>();
+        for (String entry : targetAddresses.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+
+            int weight = 1;
+            final int weightIndex = entry.lastIndexOf('=');
+            if (weightIndex != -1) {
+                try {
+                    weight = Integer.parseInt(entry.substring(weightIndex + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid target address weight: " + entry);
+                }
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Target address weight must be positive: " + entry);
+                }
+                entry = entry.substring(0, weightIndex).trim();
+            }
+            parsedAddresses.put(AddressUtil.parse(entry, this.targetVersion), weight);
+        }
+        if (parsedAddresses.isEmpty()) {
+            throw new IllegalArgumentException("No target address specified");
+        }
+
+        this.targetAddress = parsedAddresses.keySet().iterator().next();
+        this.targetAddresses = parsedAddresses.size() > 1 ? Collections.unmodifiableMap(parsedAddresses) : null;
+    }
+
+    private HostnameRouter parseRoutes(final Object routesObject) {
+        if (!(routesObject instanceof Map<?, ?> routesMap) || routesMap.isEmpty()) {
+            return HostnameRouter.EMPTY;
+        }
+
+        final List<Account> accounts = ViaProxy.getSaveManager().accountsSave.getAccounts();
+        final Map<String, HostnameRouter.Route> routes = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : routesMap.entrySet()) {
+            final String pattern = String.valueOf(entry.getKey());
+            if (!(entry.getValue() instanceof Map<?, ?> route) || !(route.get("address") instanceof String address)) {
+                throw new IllegalArgumentException("Invalid route for " + pattern + ". Routes need at least an address.");
+            }
+
+            ProtocolVersion version = this.targetVersion;
+            if (route.get("version") != null) {
+                version = ProtocolVersionUtil.fromNameLenient(String.valueOf(route.get("version")));
+                if (version == null) {
+                    throw new IllegalArgumentException("Invalid version for route " + pattern + ": " + route.get("version"));
+                }
+            }
+            Account account = null;
+            if (route.get("account") instanceof Number accountIndex) {
+                if (accountIndex.intValue() < 0 || accountIndex.intValue() >= accounts.size()) {
+                    throw new IllegalArgumentException("Invalid account index for route " + pattern + ": " + accountIndex);
+                }
+                account = accounts.get(accountIndex.intValue());
+            }
+            routes.put(pattern, new HostnameRouter.Route(AddressUtil.parse(address, version), version, account));
+        }
+
+        this.logger.info("Loaded " + routes.size() + " hostname routes");
+        return new HostnameRouter(routes);
+    }
+
     private URI parseProxyUrl(final String proxyUrl) {
         if (!proxyUrl.isBlank()) {
             try {
@@ -549,6 +764,52 @@ public class ViaProxyConfig extends Config implements com.viaversion.viaversion.
 
     }
 
+    public enum RealmsPrewakeMode {
+
+        /**
+         * Join the realm, which boots it if it is offline and refreshes its address
+         */
+        JOIN,
+        /**
+         * Only refresh the availability and the world list, which keeps the Realms API session warm without booting the realm
+         */
+        AVAILABILITY;
+
+        public static RealmsPrewakeMode byName(String name) {
+            for (RealmsPrewakeMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+
+            return JOIN;
+        }
+
+    }
+
+    public enum LoadBalancingStrategy {
+
+        /**
+         * Connect to the target server with the fewest connections relative to its weight
+         */
+        LEAST_CONNECTIONS,
+        /**
+         * Connect clients from the same address to the same target server
+         */
+        CONSISTENT_HASH;
+
+        public static LoadBalancingStrategy byName(String name) {
+            for (LoadBalancingStrategy strategy : values()) {
+                if (strategy.name().equalsIgnoreCase(name)) {
+                    return strategy;
+                }
+            }
+
+            return LEAST_CONNECTIONS;
+        }
+
+    }
+
     public enum WildcardDomainHandling {
 
         /**
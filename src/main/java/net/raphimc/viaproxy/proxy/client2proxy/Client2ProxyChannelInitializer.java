@@ -26,7 +26,9 @@ import net.raphimc.netminecraft.packet.registry.PacketRegistryUtil;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.plugins.events.Client2ProxyChannelInitializeEvent;
 import net.raphimc.viaproxy.plugins.events.types.ITyped;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 import net.raphimc.viaproxy.proxy.client2proxy.passthrough.LegacyPassthroughInitialHandler;
+import net.raphimc.viaproxy.proxy.util.RateLimiter;
 
 import java.util.function.Supplier;
 
@@ -42,16 +44,22 @@ public class Client2ProxyChannelInitializer extends MinecraftChannelInitializer
 
     @Override
     protected void initChannel(Channel channel) {
+        final ViaProxyConfig config = ViaProxy.getConfig(); // Set up the whole pipeline with the same config, even if it is reloaded meanwhile
+        if (!RateLimiter.tryAcquireGlobalConnection() || (!config.useFrontendHaProxy() && !RateLimiter.tryAcquireConnection(channel.remoteAddress()))) {
+            channel.close(); // The per address limit is checked by the HAProxyHandler if the real address is only known after the HAProxy header
+            return;
+        }
+
         if (ViaProxy.EVENT_MANAGER.call(new Client2ProxyChannelInitializeEvent(ITyped.Type.PRE, channel, false)).isCancelled()) {
             channel.close();
             return;
         }
 
-        if (ViaProxy.getConfig().useFrontendHaProxy()) {
+        if (config.useFrontendHaProxy()) {
             channel.pipeline().addLast(VIAPROXY_HAPROXY_DECODER_NAME, new HAProxyMessageDecoder());
             channel.pipeline().addLast(VIAPROXY_HAPROXY_HANDLER_NAME, new HAProxyHandler());
         }
-        if (ViaProxy.getConfig().shouldAllowLegacyClientPassthrough()) {
+        if (config.shouldAllowLegacyClientPassthrough()) {
             channel.pipeline().addLast(LEGACY_PASSTHROUGH_INITIAL_HANDLER_NAME, new LegacyPassthroughInitialHandler());
         }
 
@@ -30,6 +30,10 @@ import net.raphimc.netminecraft.constants.ConnectionState;
 import net.raphimc.netminecraft.constants.IntendedState;
 import net.raphimc.netminecraft.packet.IPacket;
 import net.raphimc.netminecraft.packet.impl.handshaking.C2SHandshakingClientIntentionPacket;
+import net.raphimc.netminecraft.packet.impl.status.C2SStatusPingRequestPacket;
+import net.raphimc.netminecraft.packet.impl.status.C2SStatusRequestPacket;
+import net.raphimc.netminecraft.packet.impl.status.S2CStatusPongResponsePacket;
+import net.raphimc.netminecraft.packet.impl.status.S2CStatusResponsePacket;
 import net.raphimc.viabedrock.api.BedrockProtocolVersion;
 import net.raphimc.vialegacy.api.LegacyProtocolVersion;
 import net.raphimc.viaproxy.ViaProxy;
@@ -40,6 +44,7 @@ import net.raphimc.viaproxy.plugins.events.ProxySessionCreationEvent;
 import net.raphimc.viaproxy.protocoltranslator.ProtocolTranslator;
 import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 import net.raphimc.viaproxy.proxy.packethandler.*;
+import net.raphimc.viaproxy.proxy.proxy2server.LoadBalancer;
 import net.raphimc.viaproxy.proxy.proxy2server.Proxy2ServerChannelInitializer;
 import net.raphimc.viaproxy.proxy.proxy2server.Proxy2ServerHandler;
 import net.raphimc.viaproxy.proxy.session.BedrockProxyConnection;
@@ -47,6 +52,8 @@ import net.raphimc.viaproxy.proxy.session.DummyProxyConnection;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
 import net.raphimc.viaproxy.proxy.session.UserOptions;
 import net.raphimc.viaproxy.proxy.util.*;
+import net.raphimc.viaproxy.realms.RealmsResolver;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
 import net.raphimc.viaproxy.saves.impl.accounts.ClassicAccount;
 import net.raphimc.viaproxy.util.AddressUtil;
 import net.raphimc.viaproxy.util.ArrayHelper;
@@ -60,12 +67,19 @@ import java.net.SocketAddress;
 import java.nio.channels.UnresolvedAddressException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 
 public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
 
+    private static final int REALM_RESOLVE_HOLD_SECONDS = 10;
+
     private ProxyConnection proxyConnection;
+    private String cachedStatusResponse;
+    private CompletableFuture<SocketAddress> realmAddress;
+    private boolean realmSelected;
+    private boolean realmRetried;
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
@@ -90,6 +104,11 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
     protected void channelRead0(ChannelHandlerContext ctx, IPacket packet) throws Exception {
         if (this.proxyConnection.isClosed()) return;
 
+        if (this.cachedStatusResponse != null) {
+            this.handleCachedStatus(ctx, packet);
+            return;
+        }
+
         if (this.proxyConnection.getC2pConnectionState() == ConnectionState.HANDSHAKING) {
             if (packet instanceof C2SHandshakingClientIntentionPacket) this.handleHandshake((C2SHandshakingClientIntentionPacket) packet);
             else throw new IllegalStateException("Unexpected packet in HANDSHAKING state");
@@ -120,38 +139,72 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
         this.proxyConnection.setClientVersion(clientVersion);
         this.proxyConnection.setC2pConnectionState(packet.intendedState.getConnectionState());
 
+        if (this.realmAddress == null) { // Rate limit before holding the connection for the realm address, so a held handshake can't bypass the limits
+            if (packet.intendedState.getConnectionState() == ConnectionState.STATUS && !RateLimiter.tryAcquireStatus(this.proxyConnection.getC2P().remoteAddress())) {
+                throw CloseAndReturn.INSTANCE;
+            } else if (packet.intendedState.getConnectionState() == ConnectionState.LOGIN && !RateLimiter.tryAcquireLogin(this.proxyConnection.getC2P().remoteAddress())) {
+                this.proxyConnection.kickClient("§cYou are logging in too fast! Please try again later.");
+            }
+
+            if (RealmsResolver.isEnabled()) {
+                final String realmSelector = RealmsResolver.parseSelector(packet.address.split("\0")[0]);
+                this.realmSelected = realmSelector != null;
+                this.realmAddress = this.realmSelected ? RealmsResolver.resolve(realmSelector) : RealmsResolver.getAddress();
+            }
+        }
+        if (this.realmAddress != null && !this.realmAddress.isDone()) { // Hold the connection until the realm address is known
+            ChannelUtil.disableAutoRead(this.proxyConnection.getC2P());
+            this.realmAddress.copy().orTimeout(REALM_RESOLVE_HOLD_SECONDS, TimeUnit.SECONDS).whenCompleteAsync((address, throwable) -> {
+                ChannelUtil.restoreAutoRead(this.proxyConnection.getC2P());
+                try {
+                    if (!this.realmAddress.isDone()) {
+                        this.proxyConnection.kickClient("§cThe realm address is not known yet. Please try again in a moment.");
+                    }
+                    this.handleHandshake(packet);
+                } catch (Throwable e) {
+                    this.proxyConnection.getC2P().pipeline().fireExceptionCaught(e);
+                }
+            }, this.proxyConnection.getC2P().eventLoop());
+            return;
+        }
+
         if (!clientVersion.isKnown()) {
             this.proxyConnection.kickClient("§cYour client version is not supported by ViaProxy!");
         }
 
         final String[] handshakeParts = packet.address.split("\0");
 
-        SocketAddress serverAddress = ViaProxy.getConfig().getTargetAddress();
-        ProtocolVersion serverVersion = ViaProxy.getConfig().getTargetVersion();
-        String classicMpPass = ViaProxy.getConfig().getAccount() instanceof ClassicAccount classicAccount ? classicAccount.getMppass() : null;
-
-        if (ViaProxy.getConfig().getWildcardDomainHandling() == ViaProxyConfig.WildcardDomainHandling.PUBLIC) {
+        SocketAddress serverAddress = null; // Only select a load balanced target server if no route, realm or wildcard domain overrides it
+        if (this.realmAddress != null) {
             try {
-                if (!handshakeParts[0].toLowerCase().contains(".viaproxy.")) {
-                    throw new IllegalArgumentException();
-                }
-                final String addressData = handshakeParts[0].substring(0, handshakeParts[0].toLowerCase().lastIndexOf(".viaproxy."));
-                final ArrayHelper arrayHelper = ArrayHelper.instanceOf(addressData.split(Pattern.quote("_")));
-                if (arrayHelper.getLength() < 3) {
-                    throw new IllegalArgumentException();
-                }
-                final String versionString = arrayHelper.get(arrayHelper.getLength() - 1);
-                serverVersion = ProtocolVersionUtil.fromNameLenient(versionString);
-                if (serverVersion == null) {
-                    this.proxyConnection.kickClient("§cWrong domain syntax!\n§cUnknown server version.");
-                }
-                final String connectAddress = arrayHelper.getAsString(0, arrayHelper.getLength() - 3, "_");
-                final int connectPort = arrayHelper.getInteger(arrayHelper.getLength() - 2);
-                serverAddress = AddressUtil.parse(connectAddress + ":" + connectPort, serverVersion);
+                serverAddress = this.realmAddress.join();
+            } catch (CompletionException e) {
+                this.proxyConnection.kickClient("§cThe realm address could not be resolved:\n§c" + e.getCause().getMessage());
+            }
+        }
+        ProtocolVersion serverVersion = this.proxyConnection.getConfig().getTargetVersion();
+        String classicMpPass = this.proxyConnection.getConfig().getAccount() instanceof ClassicAccount classicAccount ? classicAccount.getMppass() : null;
+        Account account = this.proxyConnection.getConfig().getAccount();
+
+        final HostnameRouter.Route route = this.realmSelected ? null : this.proxyConnection.getConfig().getHostnameRouter().route(handshakeParts[0]);
+        if (this.realmSelected) {
+            // A realm selected by the hostname takes precedence over the routes and wildcard domains
+        } else if (route != null) {
+            serverAddress = route.address();
+            serverVersion = route.version();
+            if (route.account() != null) {
+                account = route.account();
+                classicMpPass = account instanceof ClassicAccount classicAccount ? classicAccount.getMppass() : null;
+            }
+        } else if (this.proxyConnection.getConfig().getWildcardDomainHandling() == ViaProxyConfig.WildcardDomainHandling.PUBLIC) {
+            try {
+                final HostnameRouter.Route wildcardRoute = HostnameRouter.parsePublicWildcardDomain(handshakeParts[0]);
+                serverAddress = wildcardRoute.address();
+                serverVersion = wildcardRoute.version();
             } catch (IllegalArgumentException e) {
-                this.proxyConnection.kickClient("§cWrong domain syntax! §6Please use:\n§7address_port_version.viaproxy.hostname");
+                this.proxyConnection.kickClient(e.getMessage());
             }
-        } else if (ViaProxy.getConfig().getWildcardDomainHandling() == ViaProxyConfig.WildcardDomainHandling.INTERNAL) {
+        } else if (this.proxyConnection.getConfig().getWildcardDomainHandling() == ViaProxyConfig.WildcardDomainHandling.INTERNAL) {
             final ArrayHelper arrayHelper = ArrayHelper.instanceOf(handshakeParts[0].split("\7"));
             handshakeParts[0] = arrayHelper.get(0); // Restore the original address
             final String versionString = arrayHelper.get(2);
@@ -162,10 +215,13 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
                 classicMpPass = arrayHelper.getString(3);
             }
         }
+        if (serverAddress == null) {
+            serverAddress = LoadBalancer.select(this.proxyConnection.getC2P().remoteAddress());
+        }
 
-        if (packet.intendedState.getConnectionState() == ConnectionState.STATUS && !ViaProxy.getConfig().shouldAllowBetaPinging() && serverVersion.olderThanOrEqualTo(LegacyProtocolVersion.b1_7tob1_7_3)) {
-            if (!ViaProxy.getConfig().getCustomMotd().isBlank()) {
-                this.proxyConnection.kickClient(ViaProxy.getConfig().getCustomMotd());
+        if (packet.intendedState.getConnectionState() == ConnectionState.STATUS && !this.proxyConnection.getConfig().shouldAllowBetaPinging() && serverVersion.olderThanOrEqualTo(LegacyProtocolVersion.b1_7tob1_7_3)) {
+            if (!this.proxyConnection.getConfig().getCustomMotd().isBlank()) {
+                this.proxyConnection.kickClient(this.proxyConnection.getConfig().getCustomMotd());
             }
             this.proxyConnection.kickClient("§7ViaProxy is working!\n§7Connect to join the configured server");
         }
@@ -188,17 +244,29 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
         serverAddress = preConnectEvent.getServerAddress();
         serverVersion = preConnectEvent.getServerVersion();
 
-        final UserOptions userOptions = new UserOptions(classicMpPass, ViaProxy.getConfig().getAccount());
+        if (packet.intendedState.getConnectionState() == ConnectionState.STATUS) {
+            final String cachedStatusResponse = StatusResponseCache.get(this.proxyConnection, new StatusResponseCache.Key(serverAddress, serverVersion, clientVersion));
+            if (cachedStatusResponse != null) { // Answer the ping without connecting to the backend server
+                this.cachedStatusResponse = cachedStatusResponse;
+                return;
+            }
+        }
+
+        final UserOptions userOptions = new UserOptions(classicMpPass, account);
         ChannelUtil.disableAutoRead(this.proxyConnection.getC2P());
 
         if (packet.intendedState.getConnectionState() == ConnectionState.LOGIN && serverVersion.equals(ProtocolTranslator.AUTO_DETECT_PROTOCOL)) {
             SocketAddress finalServerAddress = serverAddress;
             HostAndPort finalClientHandshakeAddress = clientHandshakeAddress;
-            CompletableFuture.runAsync(() -> {
-                final ProtocolVersion detectedVersion = ProtocolVersionDetector.get(finalServerAddress, clientVersion);
+            ProtocolVersionDetector.get(finalServerAddress, clientVersion).thenAccept(detectedVersion -> {
                 this.connect(finalServerAddress, detectedVersion, clientVersion, packet.intendedState, finalClientHandshakeAddress, userOptions, handshakeParts);
             }).exceptionally(t -> {
-                if (t instanceof ConnectException || t instanceof UnresolvedAddressException) {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    t = t.getCause();
+                }
+                if (t instanceof CloseAndReturn) {
+                    return null;
+                } else if (t instanceof ConnectException || t instanceof UnresolvedAddressException) {
                     this.proxyConnection.kickClient("§cCould not connect to the backend server!");
                 } else {
                     this.proxyConnection.kickClient("§cAutomatic protocol detection failed!\n§c" + t.getMessage());
@@ -210,8 +278,19 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
         }
     }
 
+    private void handleCachedStatus(final ChannelHandlerContext ctx, final IPacket packet) {
+        if (packet instanceof C2SStatusRequestPacket) {
+            ctx.writeAndFlush(new S2CStatusResponsePacket(this.cachedStatusResponse)).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        } else if (packet instanceof C2SStatusPingRequestPacket pingRequestPacket) {
+            ctx.writeAndFlush(new S2CStatusPongResponsePacket(pingRequestPacket.startTime)).addListeners(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE, ChannelFutureListener.CLOSE);
+        } else {
+            throw new IllegalStateException("Unexpected packet in STATUS state");
+        }
+    }
+
     private void connect(final SocketAddress serverAddress, final ProtocolVersion serverVersion, final ProtocolVersion clientVersion, final IntendedState intendedState, final HostAndPort clientHandshakeAddress, final UserOptions userOptions, final String[] handshakeParts) {
         final Supplier<ChannelHandler> handlerSupplier = () -> ViaProxy.EVENT_MANAGER.call(new Proxy2ServerHandlerCreationEvent(new Proxy2ServerHandler(), false)).getHandler();
+        final ViaProxyConfig config = this.proxyConnection.getConfig(); // Keep the config the handshake was handled with
         final ProxyConnection proxyConnection;
         if (serverVersion.equals(BedrockProtocolVersion.bedrockLatest)) {
             proxyConnection = new BedrockProxyConnection(handlerSupplier, Proxy2ServerChannelInitializer::new, this.proxyConnection.getC2P());
@@ -220,16 +299,17 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
         }
         this.proxyConnection = ViaProxy.EVENT_MANAGER.call(new ProxySessionCreationEvent<>(proxyConnection, false)).getProxySession();
         this.proxyConnection.getC2P().attr(ProxyConnection.PROXY_CONNECTION_ATTRIBUTE_KEY).set(this.proxyConnection);
+        this.proxyConnection.setConfig(config);
         this.proxyConnection.setClientVersion(clientVersion);
         this.proxyConnection.setClientHandshakeAddress(clientHandshakeAddress);
         this.proxyConnection.setUserOptions(userOptions);
         this.proxyConnection.setC2pConnectionState(intendedState.getConnectionState());
         this.proxyConnection.getPacketHandlers().add(new StatusPacketHandler(this.proxyConnection));
         this.proxyConnection.getPacketHandlers().add(new OpenAuthModPacketHandler(this.proxyConnection));
-        if (ViaProxy.getConfig().shouldSupportSimpleVoiceChat() && serverVersion.newerThan(ProtocolVersion.v1_14) && clientVersion.newerThan(ProtocolVersion.v1_14)) {
+        if (this.proxyConnection.getConfig().shouldSupportSimpleVoiceChat() && serverVersion.newerThan(ProtocolVersion.v1_14) && clientVersion.newerThan(ProtocolVersion.v1_14)) {
             this.proxyConnection.getPacketHandlers().add(new SimpleVoiceChatPacketHandler(this.proxyConnection));
         }
-        if (ViaProxy.getConfig().shouldFakeAcceptResourcePacks() && serverVersion.newerThanOrEqualTo(LegacyProtocolVersion.r1_3_1tor1_3_2)) {
+        if (this.proxyConnection.getConfig().shouldFakeAcceptResourcePacks() && serverVersion.newerThanOrEqualTo(LegacyProtocolVersion.r1_3_1tor1_3_2)) {
             this.proxyConnection.getPacketHandlers().add(new ResourcePackSpooferPacketHandler(this.proxyConnection));
         }
         if (clientVersion.newerThanOrEqualTo(ProtocolVersion.v1_8)) {
@@ -254,8 +334,8 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
 
         this.proxyConnection.connectToServer(serverAddress, serverVersion).addListeners((ThrowingChannelFutureListener) f -> {
             if (f.isSuccess()) {
-                f.channel().eventLoop().submit(() -> { // Reschedule so the packets get sent after the channel is fully initialized and active
-                    if (ViaProxy.getConfig().useBackendHaProxy()) {
+                this.proxyConnection.getChannel().eventLoop().submit(() -> { // Reschedule so the packets get sent after the channel is fully initialized and active
+                    if (this.proxyConnection.getConfig().useBackendHaProxy()) {
                         this.proxyConnection.getChannel().writeAndFlush(HAProxyUtil.createMessage(this.proxyConnection.getC2P(), this.proxyConnection.getChannel(), clientVersion)).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
                     }
 
@@ -288,6 +368,22 @@ public class Client2ProxyHandler extends SimpleChannelInboundHandler<IPacket> {
         }, (ThrowingChannelFutureListener) f -> {
             if (!f.isSuccess()) {
                 if (f.cause() instanceof ConnectException || f.cause() instanceof UnresolvedAddressException) {
+                    final CompletableFuture<SocketAddress> realmAddress = this.realmRetried ? null : RealmsResolver.reresolve(serverAddress);
+                    if (realmAddress != null) { // The realm might have been restarted with a different address
+                        this.realmRetried = true;
+                        Logger.u_info("connect", this.proxyConnection, "Could not connect to the realm, retrying with its current address");
+                        realmAddress.whenCompleteAsync((newAddress, throwable) -> {
+                            try {
+                                if (throwable != null) {
+                                    this.proxyConnection.kickClient("§cCould not connect to the realm!");
+                                }
+                                this.connect(newAddress, serverVersion, clientVersion, intendedState, clientHandshakeAddress, userOptions, handshakeParts);
+                            } catch (Throwable e) {
+                                this.proxyConnection.getC2P().pipeline().fireExceptionCaught(e);
+                            }
+                        }, this.proxyConnection.getC2P().eventLoop());
+                        return;
+                    }
                     this.proxyConnection.kickClient("§cCould not connect to the backend server!");
                 } else {
                     Logger.LOGGER.error("Error while connecting to the backend server", f.cause());
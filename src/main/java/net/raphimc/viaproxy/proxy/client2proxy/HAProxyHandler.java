@@ -23,6 +23,7 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.haproxy.HAProxyCommand;
 import io.netty.handler.codec.haproxy.HAProxyMessage;
 import net.lenni0451.reflect.stream.RStream;
+import net.raphimc.viaproxy.proxy.util.RateLimiter;
 
 import java.net.InetSocketAddress;
 
@@ -43,6 +44,10 @@ public class HAProxyHandler extends SimpleChannelInboundHandler<HAProxyMessage>
                 RStream.of(AbstractChannel.class, ctx.channel()).fields().by("remoteAddress").set(sourceAddress);
             }
         }
+        if (!RateLimiter.tryAcquireConnection(ctx.channel().remoteAddress())) {
+            ctx.close();
+            return;
+        }
 
         ctx.pipeline().remove(this);
         super.channelActive(ctx);
@@ -17,10 +17,16 @@
  */
 package net.raphimc.viaproxy.proxy.external_interface;
 
+import com.google.gson.JsonObject;
 import com.mojang.authlib.GameProfileRepository;
 import com.mojang.authlib.minecraft.MinecraftSessionService;
 import com.mojang.authlib.yggdrasil.YggdrasilAuthenticationService;
+import net.lenni0451.commons.httpclient.HttpResponse;
+import net.lenni0451.commons.httpclient.requests.impl.PostRequest;
+import net.raphimc.minecraftauth.util.JsonContent;
+import net.raphimc.viaproxy.util.SharedHttpClient;
 
+import java.io.IOException;
 import java.net.Proxy;
 import java.util.UUID;
 
@@ -30,4 +36,28 @@ public class AuthLibServices {
     public static final MinecraftSessionService SESSION_SERVICE = AUTHENTICATION_SERVICE.createMinecraftSessionService();
     public static final GameProfileRepository PROFILE_REPOSITORY = AUTHENTICATION_SERVICE.createProfileRepository();
 
+    private static final String JOIN_URL = "https://sessionserver.mojang.com/session/minecraft/join";
+
+    /**
+     * Same request as {@link MinecraftSessionService#joinServer}, but sent using the {@link SharedHttpClient}, so the connection to the session server is reused between logins.
+     *
+     * @param profileId    The UUID of the profile
+     * @param accessToken  The Minecraft access token of the account
+     * @param serverIdHash The server id hash sent by the server
+     * @throws IOException If the request failed or the session server rejected it
+     */
+    public static void joinServer(final UUID profileId, final String accessToken, final String serverIdHash) throws IOException {
+        final JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("accessToken", accessToken);
+        requestBody.addProperty("selectedProfile", profileId.toString().replace("-", ""));
+        requestBody.addProperty("serverId", serverIdHash);
+
+        final PostRequest request = new PostRequest(JOIN_URL);
+        request.setContent(new JsonContent(requestBody));
+        final HttpResponse response = SharedHttpClient.get().execute(request);
+        if (response.getStatusCode() / 100 != 2) {
+            throw new IOException("Session server responded with status " + response.getStatusCode() + ": " + response.getContentAsString());
+        }
+    }
+
 }
@@ -28,7 +28,6 @@ import net.raphimc.netminecraft.constants.MCPackets;
 import net.raphimc.netminecraft.packet.IPacket;
 import net.raphimc.netminecraft.packet.PacketTypes;
 import net.raphimc.netminecraft.packet.UnknownPacket;
-import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
 
 import java.nio.charset.StandardCharsets;
@@ -62,13 +61,13 @@ public class ResourcePackPacketHandler extends PacketHandler {
     }
 
     private void sendResourcePack() {
-        if (!ViaProxy.getConfig().getResourcePackUrl().isBlank()) {
+        if (!this.proxyConnection.getConfig().getResourcePackUrl().isBlank()) {
             this.proxyConnection.getChannel().eventLoop().schedule(() -> {
                 if (this.proxyConnection.getClientVersion().newerThanOrEqualTo(ProtocolVersion.v1_20_3)) {
                     final ByteBuf resourcePackPushPacket = Unpooled.buffer();
                     PacketTypes.writeVarInt(resourcePackPushPacket, MCPackets.S2C_RESOURCE_PACK_PUSH.getId(this.proxyConnection.getClientVersion().getVersion()));
                     PacketTypes.writeUuid(resourcePackPushPacket, UUID.randomUUID()); // pack id
-                    PacketTypes.writeString(resourcePackPushPacket, ViaProxy.getConfig().getResourcePackUrl()); // url
+                    PacketTypes.writeString(resourcePackPushPacket, this.proxyConnection.getConfig().getResourcePackUrl()); // url
                     PacketTypes.writeString(resourcePackPushPacket, ""); // hash
                     resourcePackPushPacket.writeBoolean(Via.getConfig().isForcedUse1_17ResourcePack()); // required
                     final JsonElement promptMessage = Via.getConfig().get1_17ResourcePackPrompt();
@@ -82,7 +81,7 @@ public class ResourcePackPacketHandler extends PacketHandler {
                 } else if (this.proxyConnection.getClientVersion().newerThanOrEqualTo(ProtocolVersion.v1_8)) {
                     final ByteBuf resourcePackPacket = Unpooled.buffer();
                     PacketTypes.writeVarInt(resourcePackPacket, MCPackets.S2C_RESOURCE_PACK.getId(this.proxyConnection.getClientVersion().getVersion()));
-                    PacketTypes.writeString(resourcePackPacket, ViaProxy.getConfig().getResourcePackUrl()); // url
+                    PacketTypes.writeString(resourcePackPacket, this.proxyConnection.getConfig().getResourcePackUrl()); // url
                     PacketTypes.writeString(resourcePackPacket, ""); // hash
                     if (this.proxyConnection.getClientVersion().newerThanOrEqualTo(ProtocolVersion.v1_17)) {
                         resourcePackPacket.writeBoolean(Via.getConfig().isForcedUse1_17ResourcePack()); // required
@@ -96,7 +95,7 @@ public class ResourcePackPacketHandler extends PacketHandler {
                     }
                     this.proxyConnection.getC2P().writeAndFlush(resourcePackPacket).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
                 } else if (this.proxyConnection.getClientVersion().newerThanOrEqualTo(ProtocolVersion.v1_7_2)) {
-                    final byte[] data = ViaProxy.getConfig().getResourcePackUrl().getBytes(StandardCharsets.UTF_8);
+                    final byte[] data = this.proxyConnection.getConfig().getResourcePackUrl().getBytes(StandardCharsets.UTF_8);
 
                     final ByteBuf customPayloadPacket = Unpooled.buffer();
                     PacketTypes.writeVarInt(customPayloadPacket, MCPackets.S2C_CUSTOM_PAYLOAD.getId(this.proxyConnection.getClientVersion().getVersion()));
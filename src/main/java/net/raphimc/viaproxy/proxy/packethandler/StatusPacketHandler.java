@@ -23,8 +23,8 @@ import io.netty.channel.ChannelFutureListener;
 import net.raphimc.netminecraft.packet.IPacket;
 import net.raphimc.netminecraft.packet.impl.status.S2CStatusPongResponsePacket;
 import net.raphimc.netminecraft.packet.impl.status.S2CStatusResponsePacket;
-import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
+import net.raphimc.viaproxy.proxy.util.StatusResponseCache;
 
 import java.util.List;
 
@@ -38,13 +38,16 @@ public class StatusPacketHandler extends PacketHandler {
     public boolean handleP2S(IPacket packet, List<ChannelFutureListener> listeners) {
         if (packet instanceof S2CStatusPongResponsePacket) {
             listeners.add(ChannelFutureListener.CLOSE);
-        } else if (packet instanceof S2CStatusResponsePacket statusResponsePacket && !ViaProxy.getConfig().getCustomMotd().isBlank()) {
-            try {
-                final JsonObject obj = JsonParser.parseString(statusResponsePacket.statusJson).getAsJsonObject();
-                obj.addProperty("description", ViaProxy.getConfig().getCustomMotd());
-                statusResponsePacket.statusJson = obj.toString();
-            } catch (Throwable ignored) {
+        } else if (packet instanceof S2CStatusResponsePacket statusResponsePacket) {
+            if (!this.proxyConnection.getConfig().getCustomMotd().isBlank()) {
+                try {
+                    final JsonObject obj = JsonParser.parseString(statusResponsePacket.statusJson).getAsJsonObject();
+                    obj.addProperty("description", this.proxyConnection.getConfig().getCustomMotd());
+                    statusResponsePacket.statusJson = obj.toString();
+                } catch (Throwable ignored) {
+                }
             }
+            StatusResponseCache.put(this.proxyConnection, new StatusResponseCache.Key(this.proxyConnection.getServerAddress(), this.proxyConnection.getServerVersion(), this.proxyConnection.getClientVersion()), statusResponsePacket.statusJson);
         }
 
         return true;
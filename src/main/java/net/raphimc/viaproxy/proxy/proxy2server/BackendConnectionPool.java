@@ -0,0 +1,241 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.proxy2server;
+
+import io.netty.channel.*;
+import io.netty.handler.proxy.ProxyHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
+import net.raphimc.viaproxy.proxy.session.ProxyConnection;
+import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps pre-connected idle backend connections which can be adopted by a {@link ProxyConnection} instead of dialing the backend server.<br>
+ * Pooled connections have not sent any data yet, so HAProxy headers and the handshake can be sent after adopting them.<br>
+ * Connections which were taken out of the pool are replaced right away. Connections which were closed by the backend server or timed out are only replaced once the pool is used again.
+ */
+public class BackendConnectionPool {
+
+    public static final String VIAPROXY_POOL_IDLE_HANDLER_NAME = "viaproxy-pool-idle-handler";
+
+    private static final Map<PoolKey, Pool> POOLS = new ConcurrentHashMap<>();
+
+    public static void prewarm(final ViaProxyConfig config, final SocketAddress serverAddress) {
+        if (config.getBackendConnectionPoolSize() <= 0) return;
+
+        final Pool pool = POOLS.computeIfAbsent(PoolKey.of(config, serverAddress), key -> new Pool(key, config));
+        Logger.LOGGER.info("Pre-warming " + config.getBackendConnectionPoolSize() + " backend connections to " + AddressUtil.toString(serverAddress));
+        pool.fill();
+    }
+
+    /**
+     * Takes an idle connection out of the pool of the given server address.<br>
+     * Only connections which have been opened with the same backend settings as the given config are returned.
+     *
+     * @param config        The config of the connection which wants to adopt the pooled connection
+     * @param serverAddress The address of the backend server
+     * @return The connected channel or null if there is no idle connection available
+     */
+    public static Channel poll(final ViaProxyConfig config, final SocketAddress serverAddress) {
+        final Pool pool = POOLS.get(PoolKey.of(config, serverAddress));
+        if (pool == null) return null;
+
+        final Channel channel = pool.poll();
+        pool.fill();
+        return channel;
+    }
+
+    public static void closeAll() {
+        for (Pool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * The settings pooled connections depend on. Pools are keyed on these instead of the whole config, so reloading unrelated settings keeps the pools usable.
+     */
+    private record PoolKey(SocketAddress serverAddress, URI backendProxyUrl) {
+
+        private static PoolKey of(final ViaProxyConfig config, final SocketAddress serverAddress) {
+            return new PoolKey(serverAddress, config.getBackendProxyUrl());
+        }
+
+    }
+
+    private static class Pool {
+
+        private final PoolKey key;
+        private final int maxSize;
+        private final int idleTimeoutSeconds;
+        private final Deque<PooledChannel> idleChannels = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private volatile boolean closed;
+
+        private Pool(final PoolKey key, final ViaProxyConfig config) {
+            this.key = key;
+            this.maxSize = config.getBackendConnectionPoolSize();
+            this.idleTimeoutSeconds = config.getBackendConnectionPoolIdleTimeout();
+        }
+
+        private Channel poll() {
+            PooledChannel pooledChannel;
+            while ((pooledChannel = this.idleChannels.pollFirst()) != null) {
+                if (pooledChannel.claim()) {
+                    this.size.decrementAndGet();
+                    if (pooledChannel.channel.isActive()) {
+                        pooledChannel.channel.pipeline().remove(VIAPROXY_POOL_IDLE_HANDLER_NAME);
+                        return pooledChannel.channel;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void fill() {
+            while (!this.closed) {
+                final int currentSize = this.size.get();
+                if (currentSize >= this.maxSize) break;
+                if (this.size.compareAndSet(currentSize, currentSize + 1)) {
+                    this.dial();
+                }
+            }
+        }
+
+        private void dial() {
+            final ChannelFuture connectFuture;
+            try {
+                connectFuture = ProxyConnection.createBackendBootstrap(this.key.serverAddress, null)
+                        .option(ChannelOption.SO_KEEPALIVE, true) // Pooled connections can be idle for a long time
+                        .handler(new ChannelInitializer<>() {
+                            @Override
+                            protected void initChannel(Channel channel) {
+                                if (Pool.this.key.backendProxyUrl != null) {
+                                    channel.pipeline().addLast(Proxy2ServerChannelInitializer.VIAPROXY_PROXY_HANDLER_NAME, Proxy2ServerChannelInitializer.getProxyHandler(Pool.this.key.backendProxyUrl));
+                                }
+                                channel.pipeline().addLast(VIAPROXY_POOL_IDLE_HANDLER_NAME, new PoolIdleHandler());
+                            }
+                        })
+                        .connect(this.key.serverAddress);
+            } catch (Throwable e) {
+                this.onDialFailed(e);
+                return;
+            }
+
+            connectFuture.addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    this.onDialFailed(f.cause());
+                    return;
+                }
+
+                final ProxyHandler proxyHandler = (ProxyHandler) f.channel().pipeline().get(Proxy2ServerChannelInitializer.VIAPROXY_PROXY_HANDLER_NAME);
+                if (proxyHandler != null) {
+                    proxyHandler.connectFuture().addListener((Future<Channel> f2) -> {
+                        if (f2.isSuccess()) {
+                            this.offer(f.channel());
+                        } else {
+                            f.channel().close();
+                            this.onDialFailed(f2.cause());
+                        }
+                    });
+                } else {
+                    this.offer(f.channel());
+                }
+            });
+        }
+
+        private void offer(final Channel channel) {
+            final PooledChannel pooledChannel = new PooledChannel(channel);
+            channel.closeFuture().addListener(f -> this.discard(pooledChannel)); // Replaced on the next poll
+            channel.eventLoop().schedule(() -> {
+                if (this.discard(pooledChannel)) {
+                    channel.close();
+                }
+            }, this.idleTimeoutSeconds, TimeUnit.SECONDS);
+
+            if (this.closed) {
+                channel.close();
+            } else {
+                this.idleChannels.offerLast(pooledChannel);
+            }
+        }
+
+        private boolean discard(final PooledChannel pooledChannel) {
+            if (pooledChannel.claim()) {
+                this.idleChannels.remove(pooledChannel);
+                this.size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private void onDialFailed(final Throwable cause) {
+            Logger.LOGGER.warn("Failed to pre-connect to " + AddressUtil.toString(this.key.serverAddress) + ": " + cause.getMessage());
+            this.size.decrementAndGet(); // Retried on the next poll
+        }
+
+        private void close() {
+            this.closed = true;
+            PooledChannel pooledChannel;
+            while ((pooledChannel = this.idleChannels.pollFirst()) != null) {
+                pooledChannel.channel.close();
+            }
+        }
+
+    }
+
+    private record PooledChannel(Channel channel, AtomicBoolean claimed) {
+
+        private PooledChannel(final Channel channel) {
+            this(channel, new AtomicBoolean());
+        }
+
+        private boolean claim() {
+            return this.claimed.compareAndSet(false, true);
+        }
+
+    }
+
+    private static class PoolIdleHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+            ctx.close(); // The backend server should not send anything before the handshake
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+
+    }
+
+}
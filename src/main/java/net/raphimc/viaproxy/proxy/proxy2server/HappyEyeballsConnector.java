@@ -0,0 +1,181 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.proxy2server;
+
+import com.google.common.net.InetAddresses;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import net.raphimc.viaproxy.util.Metrics;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * RFC 8305 style connection establishment: Connection attempts to all resolved addresses of a host are started in a staggered way and the first successful connection wins.
+ */
+public class HappyEyeballsConnector {
+
+    private static final int CONNECTION_ATTEMPT_DELAY_MILLIS = 250;
+    private static final ExecutorService RESOLVER = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "Happy-Eyeballs-Resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Resolves all addresses of the given server address on a separate thread, so the blocking name lookup doesn't stall the event loops.
+     *
+     * @param serverAddress The server address
+     * @return A future which completes with the resolved addresses in RFC 8305 order or with null if the address is not a host name with multiple addresses
+     */
+    public static CompletableFuture<List<InetSocketAddress>> resolve(final InetSocketAddress serverAddress) {
+        final String host = serverAddress.getHostString();
+        if (InetAddresses.isInetAddress(host)) return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return order(InetAddress.getAllByName(host), serverAddress.getPort());
+            } catch (UnknownHostException e) {
+                throw new CompletionException(e);
+            }
+        }, RESOLVER);
+    }
+
+    /**
+     * Orders the addresses as described in RFC 8305 section 4: IPv6 addresses are preferred and the address families are interleaved.
+     *
+     * @param addresses The resolved addresses in the order returned by the resolver
+     * @param port      The port to connect to
+     * @return The ordered socket addresses or null if there are less than two addresses
+     */
+    public static List<InetSocketAddress> order(final InetAddress[] addresses, final int port) {
+        if (addresses.length < 2) return null;
+
+        final List<InetAddress> ipv6Addresses = new ArrayList<>();
+        final List<InetAddress> ipv4Addresses = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) {
+                ipv6Addresses.add(address);
+            } else {
+                ipv4Addresses.add(address);
+            }
+        }
+        final List<InetSocketAddress> orderedAddresses = new ArrayList<>(addresses.length);
+        for (int i = 0; i < Math.max(ipv6Addresses.size(), ipv4Addresses.size()); i++) {
+            if (i < ipv6Addresses.size()) orderedAddresses.add(new InetSocketAddress(ipv6Addresses.get(i), port));
+            if (i < ipv4Addresses.size()) orderedAddresses.add(new InetSocketAddress(ipv4Addresses.get(i), port));
+        }
+        return orderedAddresses;
+    }
+
+    /**
+     * Connects to the first reachable address. All other attempts are cancelled once a connection has been established.<br>
+     * Has to be called on the given event loop. The dialed channels have to be registered on it as well, so the whole race runs on that event loop.
+     *
+     * @param addresses The addresses to connect to in order of preference
+     * @param dialer    The function opening a single connection attempt
+     * @param eventLoop The event loop used to schedule the staggered connection attempts
+     * @return A future which completes on the event loop with the connected channel
+     */
+    public static CompletableFuture<Channel> connect(final List<InetSocketAddress> addresses, final Function<InetSocketAddress, ChannelFuture> dialer, final EventLoop eventLoop) {
+        final Race race = new Race(addresses, dialer, eventLoop);
+        race.startNextAttempt();
+        return race.future;
+    }
+
+    private static class Race {
+
+        private final List<InetSocketAddress> addresses;
+        private final Function<InetSocketAddress, ChannelFuture> dialer;
+        private final EventLoop eventLoop;
+        private final CompletableFuture<Channel> future = new CompletableFuture<>();
+        private final List<Channel> attempts = new ArrayList<>();
+        private int nextAttempt;
+        private int failedAttempts;
+
+        private Race(final List<InetSocketAddress> addresses, final Function<InetSocketAddress, ChannelFuture> dialer, final EventLoop eventLoop) {
+            this.addresses = addresses;
+            this.dialer = dialer;
+            this.eventLoop = eventLoop;
+        }
+
+        private void startNextAttempt() {
+            if (this.future.isDone() || this.nextAttempt >= this.addresses.size()) return;
+
+            final int attemptIndex = this.nextAttempt++;
+            final InetSocketAddress address = this.addresses.get(attemptIndex);
+            Metrics.increment("happy_eyeballs.attempts");
+            try {
+                final ChannelFuture connectFuture = this.dialer.apply(address);
+                this.attempts.add(connectFuture.channel());
+                connectFuture.addListener((ChannelFutureListener) f -> this.onAttemptCompleted(attemptIndex, f));
+            } catch (Throwable e) {
+                this.onAttemptFailed(e);
+                return;
+            }
+
+            this.eventLoop.schedule(this::startNextAttempt, CONNECTION_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        private void onAttemptCompleted(final int attemptIndex, final ChannelFuture f) {
+            if (!f.isSuccess()) {
+                this.onAttemptFailed(f.cause());
+                return;
+            }
+            if (!this.future.complete(f.channel())) {
+                f.channel().close();
+                return;
+            }
+
+            final boolean ipv6 = this.addresses.get(attemptIndex).getAddress() instanceof Inet6Address;
+            Metrics.increment("happy_eyeballs.winner." + (ipv6 ? "ipv6" : "ipv4"));
+            if (attemptIndex > 0) {
+                Metrics.increment("happy_eyeballs.fallback");
+            }
+            for (Channel attempt : this.attempts) {
+                if (attempt != f.channel()) {
+                    attempt.close();
+                }
+            }
+        }
+
+        private void onAttemptFailed(final Throwable cause) {
+            this.failedAttempts++;
+            if (this.failedAttempts >= this.addresses.size()) {
+                Metrics.increment("happy_eyeballs.failed");
+                this.future.completeExceptionally(cause);
+            } else {
+                this.startNextAttempt(); // Don't wait for the attempt delay if an attempt failed
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.proxy2server;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
+import net.raphimc.viaproxy.proxy.util.StatusPinger;
+import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.Metrics;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distributes connections across the configured target addresses.<br>
+ * Target servers are actively checked using status pings and passively ejected after multiple failed connection attempts in a row.
+ */
+public class LoadBalancer {
+
+    private static final int HEALTH_CHECK_TIMEOUT = 3000;
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long EJECTION_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int VIRTUAL_NODES_PER_WEIGHT = 100;
+
+    private static volatile State state;
+    private static ScheduledFuture<?> healthCheckTask;
+
+    /**
+     * Initializes the load balancer with the currently configured target addresses.
+     */
+    public static synchronized void start() {
+        final State previousState = state;
+        stop();
+        final Map<SocketAddress, Integer> targetAddresses = ViaProxy.getConfig().getTargetAddresses();
+        if (targetAddresses.size() < 2) return;
+
+        state = new State(targetAddresses, previousState);
+        Logger.LOGGER.info("Load balancing across " + targetAddresses.size() + " target servers using " + ViaProxy.getConfig().getLoadBalancingStrategy().name().toLowerCase(Locale.ROOT));
+        final int interval = ViaProxy.getConfig().getBackendHealthCheckInterval();
+        if (interval > 0) {
+            final State currentState = state;
+            healthCheckTask = GlobalEventExecutor.INSTANCE.scheduleWithFixedDelay(() -> checkHealth(currentState), 0, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (healthCheckTask != null) {
+            healthCheckTask.cancel(false);
+            healthCheckTask = null;
+        }
+        state = null;
+    }
+
+    /**
+     * Selects the target server for a new connection.
+     *
+     * @param clientAddress The address of the client (Used by the consistent hash strategy)
+     * @return The selected target address or the configured target address if load balancing is not active
+     */
+    public static SocketAddress select(final SocketAddress clientAddress) {
+        final State state = LoadBalancer.state;
+        if (state == null) {
+            return ViaProxy.getConfig().getTargetAddress();
+        }
+
+        final Backend backend;
+        if (ViaProxy.getConfig().getLoadBalancingStrategy() == ViaProxyConfig.LoadBalancingStrategy.CONSISTENT_HASH) {
+            backend = state.selectByHash(clientAddress instanceof InetSocketAddress inetSocketAddress && inetSocketAddress.getAddress() != null ? inetSocketAddress.getAddress().getHostAddress() : String.valueOf(clientAddress));
+        } else {
+            backend = state.selectLeastConnections();
+        }
+        Metrics.increment("load_balancer.selected." + AddressUtil.toString(backend.address));
+        return backend.address;
+    }
+
+    /**
+     * Tracks the connection to a target server. Connections to addresses which are not load balanced are ignored.
+     *
+     * @param serverAddress The address of the target server
+     * @param channel       The connected channel or null if the connection failed
+     */
+    public static void track(final SocketAddress serverAddress, final Channel channel) {
+        final State state = LoadBalancer.state;
+        if (state == null) return;
+        final Backend backend = state.backends.get(serverAddress);
+        if (backend == null) return;
+
+        if (channel == null) {
+            backend.lastFailure = System.currentTimeMillis();
+            if (backend.consecutiveFailures.incrementAndGet() == MAX_CONSECUTIVE_FAILURES) {
+                Logger.LOGGER.warn("Temporarily excluding target server " + AddressUtil.toString(serverAddress) + " after " + MAX_CONSECUTIVE_FAILURES + " failed connection attempts");
+                Metrics.increment("load_balancer.ejected");
+            }
+        } else {
+            backend.consecutiveFailures.set(0);
+            backend.activeConnections.incrementAndGet();
+            channel.closeFuture().addListener(f -> backend.activeConnections.decrementAndGet());
+        }
+    }
+
+    private static void checkHealth(final State state) {
+        for (Backend backend : state.backends.values()) {
+            StatusPinger.pingBackend(backend.address, -1, HEALTH_CHECK_TIMEOUT).whenComplete((statusJson, throwable) -> {
+                final boolean healthy = throwable == null;
+                if (backend.healthy != healthy) {
+                    if (healthy) {
+                        Logger.LOGGER.info("Target server " + AddressUtil.toString(backend.address) + " is online again");
+                    } else {
+                        Logger.LOGGER.warn("Target server " + AddressUtil.toString(backend.address) + " failed the health check: " + throwable.getMessage());
+                        Metrics.increment("load_balancer.health_check_failed");
+                    }
+                }
+                backend.healthy = healthy;
+                if (healthy) {
+                    backend.consecutiveFailures.set(0);
+                }
+            });
+        }
+    }
+
+    private static class State {
+
+        private final Map<SocketAddress, Backend> backends = new LinkedHashMap<>();
+        private final NavigableMap<Integer, Backend> hashRing = new TreeMap<>();
+
+        /**
+         * @param targetAddresses The target addresses and their weights
+         * @param previousState   The state before a config reload or null. Backends which didn't change are taken over, so the connection counts of open connections stay correct.
+         */
+        private State(final Map<SocketAddress, Integer> targetAddresses, final State previousState) {
+            for (Map.Entry<SocketAddress, Integer> entry : targetAddresses.entrySet()) {
+                final Backend previousBackend = previousState != null ? previousState.backends.get(entry.getKey()) : null;
+                final Backend backend = previousBackend != null && previousBackend.weight == entry.getValue() ? previousBackend : new Backend(entry.getKey(), entry.getValue());
+                this.backends.put(backend.address, backend);
+                for (int i = 0; i < backend.weight * VIRTUAL_NODES_PER_WEIGHT; i++) {
+                    this.hashRing.put(hash(AddressUtil.toString(backend.address) + "#" + i), backend);
+                }
+            }
+        }
+
+        private Backend selectLeastConnections() {
+            Backend selected = null;
+            for (Backend backend : this.availableBackends()) {
+                if (selected == null || backend.activeConnections.get() * (long) selected.weight < selected.activeConnections.get() * (long) backend.weight) {
+                    selected = backend;
+                }
+            }
+            return selected;
+        }
+
+        private Backend selectByHash(final String key) {
+            final Collection<Backend> available = this.availableBackends();
+            final int hash = hash(key);
+            for (Backend backend : this.hashRing.tailMap(hash, true).values()) {
+                if (available.contains(backend)) return backend;
+            }
+            for (Backend backend : this.hashRing.headMap(hash, false).values()) {
+                if (available.contains(backend)) return backend;
+            }
+            return available.iterator().next();
+        }
+
+        /**
+         * @return All healthy target servers or all target servers if none of them are healthy
+         */
+        private Collection<Backend> availableBackends() {
+            final long now = System.currentTimeMillis();
+            final List<Backend> available = new ArrayList<>(this.backends.size());
+            for (Backend backend : this.backends.values()) {
+                if (backend.isAvailable(now)) {
+                    available.add(backend);
+                }
+            }
+            return available.isEmpty() ? this.backends.values() : available;
+        }
+
+        private static int hash(final String s) {
+            int h = s.hashCode(); // Spread the bits using the murmur3 finalizer, since the virtual node keys only differ slightly
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            return h;
+        }
+
+    }
+
+    private static class Backend {
+
+        private final SocketAddress address;
+        private final int weight;
+        private final AtomicInteger activeConnections = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long lastFailure;
+        private volatile boolean healthy = true;
+
+        private Backend(final SocketAddress address, final int weight) {
+            this.address = address;
+            this.weight = weight;
+        }
+
+        private boolean isAvailable(final long now) {
+            if (!this.healthy) return false;
+            return this.consecutiveFailures.get() < MAX_CONSECUTIVE_FAILURES || now - this.lastFailure >= EJECTION_MILLIS;
+        }
+
+    }
+
+}
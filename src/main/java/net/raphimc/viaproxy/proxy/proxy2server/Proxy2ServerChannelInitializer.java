@@ -66,10 +66,10 @@ public class Proxy2ServerChannelInitializer extends MinecraftChannelInitializer
         new ProtocolPipelineImpl(user);
         proxyConnection.setUserConnection(user);
 
-        if (ViaProxy.getConfig().getBackendProxyUrl() != null && !proxyConnection.getServerVersion().equals(BedrockProtocolVersion.bedrockLatest)) {
-            channel.pipeline().addLast(VIAPROXY_PROXY_HANDLER_NAME, this.getProxyHandler());
+        if (proxyConnection.getConfig().getBackendProxyUrl() != null && !proxyConnection.getServerVersion().equals(BedrockProtocolVersion.bedrockLatest) && channel.pipeline().get(VIAPROXY_PROXY_HANDLER_NAME) == null) { // Pooled connections already went through the proxy
+            channel.pipeline().addLast(VIAPROXY_PROXY_HANDLER_NAME, getProxyHandler(proxyConnection.getConfig().getBackendProxyUrl()));
         }
-        if (ViaProxy.getConfig().useBackendHaProxy()) {
+        if (proxyConnection.getConfig().useBackendHaProxy()) {
             channel.pipeline().addLast(VIAPROXY_HAPROXY_ENCODER_NAME, HAProxyMessageEncoder.INSTANCE);
         }
 
@@ -88,8 +88,7 @@ public class Proxy2ServerChannelInitializer extends MinecraftChannelInitializer
         }
     }
 
-    protected ProxyHandler getProxyHandler() {
-        final URI proxyUrl = ViaProxy.getConfig().getBackendProxyUrl();
+    public static ProxyHandler getProxyHandler(final URI proxyUrl) {
         final InetSocketAddress proxyAddress = new InetSocketAddress(proxyUrl.getHost(), proxyUrl.getPort());
         final String username = proxyUrl.getUserInfo() != null ? proxyUrl.getUserInfo().split(":")[0] : null;
         final String password = proxyUrl.getUserInfo() != null && proxyUrl.getUserInfo().contains(":") ? proxyUrl.getUserInfo().split(":")[1] : null;
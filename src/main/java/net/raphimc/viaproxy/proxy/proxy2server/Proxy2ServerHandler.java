@@ -33,6 +33,15 @@ public class Proxy2ServerHandler extends SimpleChannelInboundHandler<IPacket> {
 
     private ProxyConnection proxyConnection;
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+
+        if (ctx.channel().isRegistered()) { // Adopted channels are already registered
+            this.proxyConnection = ProxyConnection.fromChannel(ctx.channel());
+        }
+    }
+
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         super.channelRegistered(ctx);
@@ -25,6 +25,7 @@ import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.plugins.events.Proxy2ServerChannelInitializeEvent;
 import net.raphimc.viaproxy.plugins.events.types.ITyped;
 import net.raphimc.viaproxy.proxy.proxy2server.Proxy2ServerChannelInitializer;
+import net.raphimc.viaproxy.proxy.session.LegacyProxyConnection;
 
 import java.util.function.Supplier;
 
@@ -41,10 +42,11 @@ public class PassthroughProxy2ServerChannelInitializer extends Proxy2ServerChann
             return;
         }
 
-        if (ViaProxy.getConfig().getBackendProxyUrl() != null) {
-            channel.pipeline().addLast(VIAPROXY_PROXY_HANDLER_NAME, this.getProxyHandler());
+        final LegacyProxyConnection proxyConnection = LegacyProxyConnection.fromChannel(channel);
+        if (proxyConnection.getConfig().getBackendProxyUrl() != null) {
+            channel.pipeline().addLast(VIAPROXY_PROXY_HANDLER_NAME, getProxyHandler(proxyConnection.getConfig().getBackendProxyUrl()));
         }
-        if (ViaProxy.getConfig().useBackendHaProxy()) {
+        if (proxyConnection.getConfig().useBackendHaProxy()) {
             channel.pipeline().addLast(VIAPROXY_HAPROXY_ENCODER_NAME, HAProxyMessageEncoder.INSTANCE);
         }
 
@@ -22,6 +22,8 @@ import io.netty.channel.*;
 import io.netty.util.AttributeKey;
 import net.raphimc.netminecraft.netty.connection.NetClient;
 import net.raphimc.netminecraft.util.ChannelType;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 
 import java.net.SocketAddress;
 import java.util.function.Function;
@@ -32,6 +34,7 @@ public class LegacyProxyConnection extends NetClient {
     public static final AttributeKey<LegacyProxyConnection> LEGACY_PROXY_CONNECTION_ATTRIBUTE_KEY = AttributeKey.valueOf("legacy_proxy_connection");
 
     private final Channel c2p;
+    private ViaProxyConfig config = ViaProxy.getConfig();
     private SocketAddress serverAddress;
 
     public LegacyProxyConnection(final Supplier<ChannelHandler> handlerSupplier, final Function<Supplier<ChannelHandler>, ChannelInitializer<Channel>> channelInitializerSupplier, final Channel c2p) {
@@ -43,6 +46,17 @@ public class LegacyProxyConnection extends NetClient {
         return channel.attr(LEGACY_PROXY_CONNECTION_ATTRIBUTE_KEY).get();
     }
 
+    /**
+     * @return The config this connection was started with. Config reloads only apply to new connections.
+     */
+    public ViaProxyConfig getConfig() {
+        return this.config;
+    }
+
+    public void setConfig(final ViaProxyConfig config) {
+        this.config = config;
+    }
+
     @Override
     public void initialize(final ChannelType channelType, final Bootstrap bootstrap) {
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 4_000);
@@ -18,6 +18,7 @@
 package net.raphimc.viaproxy.proxy.session;
 
 import com.google.common.net.HostAndPort;
+import com.google.common.net.InetAddresses;
 import com.mojang.authlib.GameProfile;
 import com.viaversion.viaversion.api.connection.UserConnection;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
@@ -28,6 +29,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.PromiseNotifier;
 import net.lenni0451.mcstructs.nbt.INbtTag;
 import net.lenni0451.mcstructs.nbt.tags.CompoundTag;
 import net.lenni0451.mcstructs.nbt.tags.StringTag;
@@ -43,12 +45,20 @@ import net.raphimc.netminecraft.packet.impl.login.S2CLoginDisconnectPacket1_20_3
 import net.raphimc.netminecraft.packet.impl.status.S2CStatusResponsePacket;
 import net.raphimc.netminecraft.packet.registry.PacketRegistryUtil;
 import net.raphimc.netminecraft.util.ChannelType;
+import net.raphimc.viabedrock.api.BedrockProtocolVersion;
+import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.cli.ConsoleFormatter;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 import net.raphimc.viaproxy.proxy.packethandler.PacketHandler;
+import net.raphimc.viaproxy.proxy.proxy2server.BackendConnectionPool;
+import net.raphimc.viaproxy.proxy.proxy2server.HappyEyeballsConnector;
+import net.raphimc.viaproxy.proxy.proxy2server.LoadBalancer;
 import net.raphimc.viaproxy.proxy.util.CloseAndReturn;
 import net.raphimc.viaproxy.util.logging.Logger;
 
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.util.ArrayList;
@@ -62,6 +72,7 @@ public class ProxyConnection extends NetClient {
 
     private final Channel c2p;
     private final List<PacketHandler> packetHandlers = new ArrayList<>();
+    private ViaProxyConfig config = ViaProxy.getConfig();
 
     private SocketAddress serverAddress;
 
@@ -84,6 +95,17 @@ public class ProxyConnection extends NetClient {
         this.c2p = c2p;
     }
 
+    /**
+     * @return The config this connection was started with. Config reloads only apply to new connections.
+     */
+    public ViaProxyConfig getConfig() {
+        return this.config;
+    }
+
+    public void setConfig(final ViaProxyConfig config) {
+        this.config = config;
+    }
+
     public static ProxyConnection fromChannel(final Channel channel) {
         return channel.attr(PROXY_CONNECTION_ATTRIBUTE_KEY).get();
     }
@@ -100,17 +122,110 @@ public class ProxyConnection extends NetClient {
 
     @Override
     public void initialize(final ChannelType channelType, final Bootstrap bootstrap) {
-        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 4_000);
-        bootstrap.attr(PROXY_CONNECTION_ATTRIBUTE_KEY, this);
+        this.configureBootstrap(bootstrap);
         super.initialize(channelType, bootstrap);
     }
 
     public ChannelFuture connectToServer(final SocketAddress serverAddress, final ProtocolVersion targetVersion) {
         this.serverAddress = serverAddress;
         this.serverVersion = targetVersion;
+        final ChannelFuture future = this.openChannel(serverAddress, targetVersion);
+        future.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                LoadBalancer.track(serverAddress, this.getChannel());
+            } else if (!(f.cause() instanceof ClosedChannelException)) {
+                LoadBalancer.track(serverAddress, null);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the options and attributes every backend channel of this connection gets, no matter if it is opened by {@link #initialize} or as a Happy Eyeballs connection attempt.
+     *
+     * @param bootstrap The bootstrap to configure
+     */
+    protected void configureBootstrap(final Bootstrap bootstrap) {
+        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 4_000);
+        bootstrap.attr(PROXY_CONNECTION_ATTRIBUTE_KEY, this);
+    }
+
+    private ChannelFuture openChannel(final SocketAddress serverAddress, final ProtocolVersion targetVersion) {
+        if (!targetVersion.equals(BedrockProtocolVersion.bedrockLatest)) {
+            final Channel pooledChannel = BackendConnectionPool.poll(this.config, serverAddress);
+            if (pooledChannel != null) {
+                return this.adoptChannel(pooledChannel);
+            }
+            if (this.config.getBackendProxyUrl() == null && serverAddress instanceof InetSocketAddress inetSocketAddress && !InetAddresses.isInetAddress(inetSocketAddress.getHostString())) {
+                final ChannelPromise promise = this.c2p.newPromise();
+                HappyEyeballsConnector.resolve(inetSocketAddress).whenCompleteAsync((addresses, throwable) -> {
+                    if (!this.c2p.isActive()) {
+                        promise.tryFailure(new ClosedChannelException());
+                    } else if (addresses == null) { // Nothing to race, also lets the default connect report resolve errors
+                        PromiseNotifier.cascade(super.connect(serverAddress), promise);
+                    } else {
+                        HappyEyeballsConnector.connect(addresses, this::dialAttempt, this.c2p.eventLoop()).whenComplete((channel, connectThrowable) -> {
+                            if (connectThrowable != null) {
+                                promise.tryFailure(connectThrowable);
+                            } else if (!this.c2p.isActive()) { // Checked on the event loop of the client connection, so it can't become inactive before the channel is adopted
+                                channel.close();
+                                promise.tryFailure(new ClosedChannelException());
+                            } else {
+                                this.adoptChannel(channel);
+                                promise.trySuccess();
+                            }
+                        });
+                    }
+                }, this.c2p.eventLoop());
+                return promise;
+            }
+        }
         return super.connect(serverAddress);
     }
 
+    /**
+     * Opens a single Happy Eyeballs connection attempt on the event loop of the client connection.<br>
+     * The channel is only initialized once it won the race and has been adopted.
+     *
+     * @param address The resolved address to connect to
+     * @return The connect future of the attempt
+     */
+    private ChannelFuture dialAttempt(final InetSocketAddress address) {
+        final Bootstrap bootstrap = createBackendBootstrap(address, this.c2p.eventLoop()).handler(new ChannelInboundHandlerAdapter());
+        this.configureBootstrap(bootstrap);
+        return bootstrap.connect(address);
+    }
+
+    /**
+     * Creates a bootstrap for backend channels which are opened before they are adopted by a connection, with the same channel type and TCP options as the bootstrap set up by {@link #initialize}.
+     *
+     * @param serverAddress The address of the backend server
+     * @param group         The event loop group to register the channel on or null to use the same group as regular backend connections
+     * @return The bootstrap without a handler
+     */
+    public static Bootstrap createBackendBootstrap(final SocketAddress serverAddress, final EventLoopGroup group) {
+        final ChannelType channelType = ChannelType.get(serverAddress);
+        return new Bootstrap()
+                .group(group != null ? group : channelType.clientEventLoopGroup().get())
+                .channel(channelType.clientChannelClass())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 4_000)
+                .option(ChannelOption.IP_TOS, 0x18) // Same TCP options as NetClient#initialize
+                .option(ChannelOption.TCP_NODELAY, true);
+    }
+
+    /**
+     * Uses an already connected channel as the backend connection instead of dialing the server.
+     *
+     * @param channel The connected channel
+     * @return A succeeded future for the adopted channel
+     */
+    protected ChannelFuture adoptChannel(final Channel channel) {
+        channel.attr(PROXY_CONNECTION_ATTRIBUTE_KEY).set(this);
+        channel.pipeline().addLast(this.channelInitializerSupplier.apply(this.handlerSupplier));
+        this.channelFuture = channel.newSucceededFuture();
+        return this.channelFuture;
+    }
+
     public Channel getC2P() {
         return this.c2p;
     }
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
 import net.raphimc.viaproxy.proxy.session.ProxyConnection;
 import net.raphimc.viaproxy.util.logging.Logger;
 
@@ -50,7 +51,8 @@ public class ExceptionUtil {
             ctx.channel().close();
             return;
         }
-        if (!client2Proxy || !ViaProxy.getConfig().shouldSuppressClientProtocolErrors()) {
+        final ViaProxyConfig config = proxyConnection != null ? proxyConnection.getConfig() : ViaProxy.getConfig();
+        if (!client2Proxy || !config.shouldSuppressClientProtocolErrors()) {
             Logger.LOGGER.error("Caught unhandled netty exception", cause);
             try {
                 if (proxyConnection != null) {
@@ -53,6 +53,13 @@ public class HAProxyUtil {
         }
     }
 
+    /**
+     * @return A header for connections which are made by ViaProxy itself (e.g. health checks) instead of being relayed for a client
+     */
+    public static HAProxyMessage createLocalMessage() {
+        return new HAProxyMessage(HAProxyProtocolVersion.V2, HAProxyCommand.LOCAL, HAProxyProxiedProtocol.UNKNOWN, null, null, 0, 0);
+    }
+
     private static <T extends InetAddress> T getInetAddress(final String host, final Class<T> addressClass) {
         try {
             final InetAddress[] addresses = InetAddress.getAllByName(host);
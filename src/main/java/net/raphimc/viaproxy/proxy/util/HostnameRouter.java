@@ -0,0 +1,226 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
+import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.ArrayHelper;
+import net.raphimc.viaproxy.util.ProtocolVersionUtil;
+
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Routes handshakes to target servers based on the hostname the client connected with.<br>
+ * Routes are compiled into a trie of the reversed hostname labels and the routing results are cached per raw handshake hostname.
+ * <p>
+ * Supported patterns:
+ * <ul>
+ *     <li>{@code play.example.com}: Exact hostname</li>
+ *     <li>{@code *.example.com}: Exactly one additional label (e.g. {@code lobby.example.com})</li>
+ *     <li>{@code .example.com}: The hostname itself and any subdomain at any depth</li>
+ * </ul>
+ * Exact routes take precedence over wildcard routes, which take precedence over the longest matching suffix route.
+ */
+public class HostnameRouter {
+
+    public static final HostnameRouter EMPTY = new HostnameRouter(Collections.emptyMap());
+
+    private static final int CACHE_SIZE = 4096;
+    private static final Route NO_ROUTE = new Route(null, null, null);
+    private static final Cache<String, Object> PUBLIC_WILDCARD_CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    private final Node root = new Node();
+    private final Cache<String, Route> cache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    private final List<Route> routes;
+
+    /**
+     * @param routes The routes by hostname pattern
+     */
+    public HostnameRouter(final Map<String, Route> routes) {
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            String pattern = normalize(entry.getKey());
+            final RouteType type;
+            if (pattern.startsWith("*.")) {
+                type = RouteType.WILDCARD;
+                pattern = pattern.substring(2);
+            } else if (pattern.startsWith(".")) {
+                type = RouteType.SUFFIX;
+                pattern = pattern.substring(1);
+            } else {
+                type = RouteType.EXACT;
+            }
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Invalid hostname pattern: " + entry.getKey());
+            }
+
+            Node node = this.root;
+            final String[] labels = pattern.split(Pattern.quote("."));
+            for (int i = labels.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(labels[i], k -> new Node());
+            }
+            switch (type) {
+                case EXACT -> node.exactRoute = entry.getValue();
+                case WILDCARD -> node.wildcardRoute = entry.getValue();
+                case SUFFIX -> node.suffixRoute = entry.getValue();
+            }
+        }
+        this.routes = List.copyOf(routes.values());
+    }
+
+    /**
+     * Finds the route for the given handshake hostname.
+     *
+     * @param hostname The hostname from the handshake packet
+     * @return The route or null if no route matches
+     */
+    public Route route(final String hostname) {
+        if (this.routes.isEmpty()) return null;
+
+        try {
+            final Route route = this.cache.get(hostname, () -> {
+                final Route foundRoute = this.find(normalize(hostname));
+                return foundRoute != null ? foundRoute : NO_ROUTE;
+            });
+            return route != NO_ROUTE ? route : null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public int getRouteCount() {
+        return this.routes.size();
+    }
+
+    public List<Route> getRoutes() {
+        return this.routes;
+    }
+
+    private Route find(final String hostname) {
+        final String[] labels = hostname.split(Pattern.quote("."));
+        Route bestSuffixRoute = null;
+        Route wildcardRoute = null;
+        Node node = this.root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.children.get(labels[i]);
+            if (node == null) break;
+            if (node.suffixRoute != null) {
+                bestSuffixRoute = node.suffixRoute;
+            }
+            if (i == 0 && node.exactRoute != null) {
+                return node.exactRoute;
+            } else if (i == 1 && node.wildcardRoute != null) {
+                wildcardRoute = node.wildcardRoute; // An exact route for the full hostname still takes precedence
+            }
+        }
+        return wildcardRoute != null ? wildcardRoute : bestSuffixRoute;
+    }
+
+    /**
+     * Parses a public wildcard domain (address_port_version.viaproxy.hostname). The results are cached per raw handshake hostname.
+     *
+     * @param hostname The hostname from the handshake packet
+     * @return The route with the target address and version
+     * @throws IllegalArgumentException If the hostname has a wrong syntax. The message is the kick message for the client.
+     */
+    public static Route parsePublicWildcardDomain(final String hostname) {
+        final Object result;
+        try {
+            result = PUBLIC_WILDCARD_CACHE.get(hostname, () -> {
+                try {
+                    return parsePublicWildcardDomain0(hostname);
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        if (result instanceof String kickMessage) {
+            throw new IllegalArgumentException(kickMessage);
+        }
+        return (Route) result;
+    }
+
+    private static Route parsePublicWildcardDomain0(final String hostname) {
+        final ProtocolVersion serverVersion;
+        final SocketAddress serverAddress;
+        try {
+            if (!hostname.toLowerCase(Locale.ROOT).contains(".viaproxy.")) {
+                throw new IllegalArgumentException();
+            }
+            final String addressData = hostname.substring(0, hostname.toLowerCase(Locale.ROOT).lastIndexOf(".viaproxy."));
+            final ArrayHelper arrayHelper = ArrayHelper.instanceOf(addressData.split(Pattern.quote("_")));
+            if (arrayHelper.getLength() < 3) {
+                throw new IllegalArgumentException();
+            }
+            final String versionString = arrayHelper.get(arrayHelper.getLength() - 1);
+            serverVersion = ProtocolVersionUtil.fromNameLenient(versionString);
+            if (serverVersion == null) {
+                throw new UnknownVersionException();
+            }
+            final String connectAddress = arrayHelper.getAsString(0, arrayHelper.getLength() - 3, "_");
+            final int connectPort = arrayHelper.getInteger(arrayHelper.getLength() - 2);
+            serverAddress = AddressUtil.parse(connectAddress + ":" + connectPort, serverVersion);
+        } catch (UnknownVersionException e) {
+            throw new IllegalArgumentException("§cWrong domain syntax!\n§cUnknown server version.");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("§cWrong domain syntax! §6Please use:\n§7address_port_version.viaproxy.hostname");
+        }
+        return new Route(serverAddress, serverVersion, null);
+    }
+
+    private static String normalize(final String hostname) {
+        String normalized = hostname.toLowerCase(Locale.ROOT).trim();
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    /**
+     * @param address The target address
+     * @param version The target version
+     * @param account The account which should be used to join the target server or null to use the configured account
+     */
+    public record Route(SocketAddress address, ProtocolVersion version, Account account) {
+    }
+
+    private static class UnknownVersionException extends IllegalArgumentException {
+    }
+
+    private enum RouteType {
+        EXACT, WILDCARD, SUFFIX
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private Route exactRoute;
+        private Route wildcardRoute;
+        private Route suffixRoute;
+
+    }
+
+}
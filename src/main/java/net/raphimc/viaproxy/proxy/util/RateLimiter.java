@@ -0,0 +1,134 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.util;
+
+import com.google.common.cache.CacheBuilder;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.util.Metrics;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket based rate limits for incoming connections and handshakes.<br>
+ * IPv6 addresses are aggregated to subnets, since a single user can usually use a whole subnet.
+ */
+public class RateLimiter {
+
+    private static final Map<InetAddress, TokenBucket> CONNECTION_BUCKETS = createBucketMap();
+    private static final Map<InetAddress, TokenBucket> STATUS_BUCKETS = createBucketMap();
+    private static final Map<InetAddress, TokenBucket> LOGIN_BUCKETS = createBucketMap();
+    private static final TokenBucket GLOBAL_CONNECTION_BUCKET = new TokenBucket();
+
+    /**
+     * Checks the global connection limit.
+     *
+     * @return true if the connection should be accepted
+     */
+    public static boolean tryAcquireGlobalConnection() {
+        final int limit = ViaProxy.getConfig().getRateLimitConnectionsGlobal();
+        if (limit <= 0) return true;
+
+        if (GLOBAL_CONNECTION_BUCKET.tryConsume(limit, TimeUnit.SECONDS)) return true;
+        Metrics.increment("rate_limit.rejected.connection.global");
+        return false;
+    }
+
+    /**
+     * Checks the per address connection limit.
+     *
+     * @param address The (real) address of the client
+     * @return true if the connection should be accepted
+     */
+    public static boolean tryAcquireConnection(final SocketAddress address) {
+        return tryAcquire(CONNECTION_BUCKETS, address, ViaProxy.getConfig().getRateLimitConnectionsPerIp(), "rate_limit.rejected.connection");
+    }
+
+    public static boolean tryAcquireStatus(final SocketAddress address) {
+        return tryAcquire(STATUS_BUCKETS, address, ViaProxy.getConfig().getRateLimitStatusPerIp(), "rate_limit.rejected.status");
+    }
+
+    public static boolean tryAcquireLogin(final SocketAddress address) {
+        return tryAcquire(LOGIN_BUCKETS, address, ViaProxy.getConfig().getRateLimitLoginsPerIp(), "rate_limit.rejected.login");
+    }
+
+    private static boolean tryAcquire(final Map<InetAddress, TokenBucket> buckets, final SocketAddress address, final int limitPerMinute, final String metricName) {
+        if (limitPerMinute <= 0 || !(address instanceof InetSocketAddress inetSocketAddress) || inetSocketAddress.getAddress() == null) return true;
+
+        final TokenBucket bucket = buckets.computeIfAbsent(aggregate(inetSocketAddress.getAddress()), k -> new TokenBucket());
+        if (bucket.tryConsume(limitPerMinute, TimeUnit.MINUTES)) return true;
+        Metrics.increment(metricName);
+        return false;
+    }
+
+    private static InetAddress aggregate(final InetAddress address) {
+        if (!(address instanceof Inet6Address)) return address;
+
+        final int prefixLength = Math.max(0, Math.min(128, ViaProxy.getConfig().getRateLimitIpv6PrefixLength()));
+        final byte[] bytes = address.getAddress();
+        for (int i = 0; i < bytes.length; i++) {
+            final int remainingBits = prefixLength - i * 8;
+            if (remainingBits <= 0) {
+                bytes[i] = 0;
+            } else if (remainingBits < 8) {
+                bytes[i] &= (byte) (0xFF << (8 - remainingBits));
+            }
+        }
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return address;
+        }
+    }
+
+    private static Map<InetAddress, TokenBucket> createBucketMap() {
+        return CacheBuilder.newBuilder().expireAfterAccess(5, TimeUnit.MINUTES).maximumSize(100_000).<InetAddress, TokenBucket>build().asMap();
+    }
+
+    /**
+     * A token bucket which holds up to the amount of tokens which are refilled per time unit.
+     */
+    private static class TokenBucket {
+
+        private double tokens = -1;
+        private long lastRefill;
+
+        private synchronized boolean tryConsume(final int limit, final TimeUnit per) {
+            final long now = System.nanoTime();
+            if (this.tokens < 0) {
+                this.tokens = limit;
+            } else {
+                this.tokens = Math.min(limit, this.tokens + (now - this.lastRefill) * (double) limit / per.toNanos(1));
+            }
+            this.lastRefill = now;
+
+            if (this.tokens >= 1) {
+                this.tokens--;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
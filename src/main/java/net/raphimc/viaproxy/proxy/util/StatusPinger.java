@@ -0,0 +1,186 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.util;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.haproxy.HAProxyMessageEncoder;
+import net.raphimc.netminecraft.constants.IntendedState;
+import net.raphimc.netminecraft.constants.MCPipeline;
+import net.raphimc.netminecraft.netty.connection.MinecraftChannelInitializer;
+import net.raphimc.netminecraft.netty.connection.NetClient;
+import net.raphimc.netminecraft.packet.IPacket;
+import net.raphimc.netminecraft.packet.impl.handshaking.C2SHandshakingClientIntentionPacket;
+import net.raphimc.netminecraft.packet.impl.status.C2SStatusRequestPacket;
+import net.raphimc.netminecraft.packet.impl.status.S2CStatusResponsePacket;
+import net.raphimc.netminecraft.packet.registry.PacketRegistryUtil;
+import net.raphimc.netminecraft.util.ChannelType;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.protocoltranslator.viaproxy.ViaProxyConfig;
+import net.raphimc.viaproxy.proxy.proxy2server.Proxy2ServerChannelInitializer;
+import net.raphimc.viaproxy.util.AddressUtil;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking modern (1.7+) server list ping running on the netty event loops
+ */
+public class StatusPinger {
+
+    public static CompletableFuture<String> ping(final SocketAddress serverAddress, final int protocolVersion, final int timeout) {
+        return ping(serverAddress, protocolVersion, timeout, false);
+    }
+
+    /**
+     * Pings a backend server the same way player connections reach it (Through the backend proxy and with a HAProxy header if configured).<br>
+     * The HAProxy header uses the LOCAL command, because there is no client whose address could be forwarded.
+     *
+     * @param serverAddress   The address of the backend server
+     * @param protocolVersion The protocol version to ping with
+     * @param timeout         The connect and read timeout in milliseconds
+     * @return A future which completes with the status json
+     */
+    public static CompletableFuture<String> pingBackend(final SocketAddress serverAddress, final int protocolVersion, final int timeout) {
+        return ping(serverAddress, protocolVersion, timeout, true);
+    }
+
+    private static CompletableFuture<String> ping(final SocketAddress serverAddress, final int protocolVersion, final int timeout, final boolean backend) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final ViaProxyConfig config = ViaProxy.getConfig(); // Use the same config for the proxy handler and the HAProxy header, even if it is reloaded while connecting
+
+        final NetClient client = new NetClient(() -> new StatusPingHandler(serverAddress, protocolVersion, backend && config.useBackendHaProxy(), future), handlerSupplier -> backend ? new BackendChannelInitializer(handlerSupplier, config) : new MinecraftChannelInitializer(handlerSupplier)) {
+            @Override
+            public void initialize(final ChannelType channelType, final Bootstrap bootstrap) {
+                bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout);
+                super.initialize(channelType, bootstrap);
+            }
+        };
+
+        try {
+            client.connect(serverAddress).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    future.completeExceptionally(f.cause());
+                    return;
+                }
+
+                f.channel().eventLoop().schedule(() -> {
+                    if (future.completeExceptionally(new TimeoutException("Server did not respond to the status request in time"))) {
+                        f.channel().close();
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            });
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private static class BackendChannelInitializer extends MinecraftChannelInitializer {
+
+        private final ViaProxyConfig config;
+
+        private BackendChannelInitializer(final Supplier<ChannelHandler> handlerSupplier, final ViaProxyConfig config) {
+            super(handlerSupplier);
+            this.config = config;
+        }
+
+        @Override
+        protected void initChannel(Channel channel) {
+            if (this.config.getBackendProxyUrl() != null) {
+                channel.pipeline().addLast(Proxy2ServerChannelInitializer.VIAPROXY_PROXY_HANDLER_NAME, Proxy2ServerChannelInitializer.getProxyHandler(this.config.getBackendProxyUrl()));
+            }
+            if (this.config.useBackendHaProxy()) {
+                channel.pipeline().addLast(Proxy2ServerChannelInitializer.VIAPROXY_HAPROXY_ENCODER_NAME, HAProxyMessageEncoder.INSTANCE);
+            }
+            super.initChannel(channel);
+        }
+
+    }
+
+    private static class StatusPingHandler extends SimpleChannelInboundHandler<IPacket> {
+
+        private final SocketAddress serverAddress;
+        private final int protocolVersion;
+        private final boolean sendHaProxyHeader;
+        private final CompletableFuture<String> future;
+
+        private StatusPingHandler(final SocketAddress serverAddress, final int protocolVersion, final boolean sendHaProxyHeader, final CompletableFuture<String> future) {
+            this.serverAddress = serverAddress;
+            this.protocolVersion = protocolVersion;
+            this.sendHaProxyHeader = sendHaProxyHeader;
+            this.future = future;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            super.channelActive(ctx);
+
+            final String address;
+            final int port;
+            if (this.serverAddress instanceof InetSocketAddress inetSocketAddress) {
+                address = inetSocketAddress.getHostString();
+                port = inetSocketAddress.getPort();
+            } else {
+                address = AddressUtil.toString(this.serverAddress);
+                port = 25565;
+            }
+
+            if (this.sendHaProxyHeader) {
+                ctx.writeAndFlush(HAProxyUtil.createLocalMessage()).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            }
+            ctx.channel().attr(MCPipeline.PACKET_REGISTRY_ATTRIBUTE_KEY).set(PacketRegistryUtil.getHandshakingRegistry(true));
+            ctx.writeAndFlush(new C2SHandshakingClientIntentionPacket(this.protocolVersion, address, port, IntendedState.STATUS)).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            ctx.channel().attr(MCPipeline.PACKET_REGISTRY_ATTRIBUTE_KEY).set(PacketRegistryUtil.getStatusRegistry(true));
+            ctx.writeAndFlush(new C2SStatusRequestPacket()).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            super.channelInactive(ctx);
+            this.future.completeExceptionally(new ClosedChannelException());
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, IPacket packet) {
+            if (packet instanceof S2CStatusResponsePacket statusResponsePacket) {
+                this.future.complete(statusResponsePacket.statusJson);
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            this.future.completeExceptionally(cause);
+            ctx.close();
+        }
+
+    }
+
+}
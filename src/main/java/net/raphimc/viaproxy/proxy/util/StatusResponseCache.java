@@ -0,0 +1,104 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.util;
+
+import com.google.common.cache.CacheBuilder;
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.viaproxy.proxy.session.ProxyConnection;
+import net.raphimc.viaproxy.util.Metrics;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the (already translated) status responses of backend servers, so server list pings can be answered without connecting to the backend server.<br>
+ * Once an entry is older than the configured TTL, the next ping is relayed to the backend server to refresh it while concurrent pings are still answered from the stale entry.
+ */
+public class StatusResponseCache {
+
+    private static final long MAX_STALE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long REFRESH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Map<Key, Entry> ENTRIES = CacheBuilder.newBuilder().maximumSize(1024).expireAfterWrite(MAX_STALE_MILLIS, TimeUnit.MILLISECONDS).<Key, Entry>build().asMap();
+
+    /**
+     * Gets the cached status response for a ping or claims the refresh of a stale entry.
+     *
+     * @param proxyConnection The connection of the pinging client (The TTL is taken from its config)
+     * @param key             The cache key
+     * @return The status json which should be sent to the client or null if the ping should be relayed to the backend server
+     */
+    public static String get(final ProxyConnection proxyConnection, final Key key) {
+        final int ttl = proxyConnection.getConfig().getStatusCacheTtl();
+        if (ttl <= 0) return null;
+
+        final Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            Metrics.increment("status_cache.miss");
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - entry.createdAt < TimeUnit.SECONDS.toMillis(ttl)) {
+            Metrics.increment("status_cache.hit");
+            return entry.statusJson;
+        }
+
+        final long refreshStartedAt = entry.refreshStartedAt.get();
+        if (now - refreshStartedAt >= REFRESH_TIMEOUT_MILLIS && entry.refreshStartedAt.compareAndSet(refreshStartedAt, now)) {
+            Metrics.increment("status_cache.refresh");
+            return null; // This ping refreshes the entry
+        }
+        Metrics.increment("status_cache.stale_hit");
+        return entry.statusJson;
+    }
+
+    public static void put(final ProxyConnection proxyConnection, final Key key, final String statusJson) {
+        if (proxyConnection.getConfig().getStatusCacheTtl() <= 0) return;
+
+        ENTRIES.put(key, new Entry(statusJson, System.currentTimeMillis()));
+    }
+
+    public static void invalidateAll() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * @param serverAddress The address of the backend server
+     * @param serverVersion The version of the backend server (Can be the auto detect version)
+     * @param clientVersion The version of the client
+     */
+    public record Key(SocketAddress serverAddress, ProtocolVersion serverVersion, ProtocolVersion clientVersion) {
+    }
+
+    private static class Entry {
+
+        private final String statusJson;
+        private final long createdAt;
+        private final AtomicLong refreshStartedAt = new AtomicLong();
+
+        private Entry(final String statusJson, final long createdAt) {
+            this.statusJson = statusJson;
+            this.createdAt = createdAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.google.common.collect.Iterables;
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
+import net.raphimc.minecraftauth.service.realms.AbstractRealmsService;
+import net.raphimc.minecraftauth.service.realms.BedrockRealmsService;
+import net.raphimc.minecraftauth.service.realms.JavaRealmsService;
+import net.raphimc.minecraftauth.service.realms.model.RealmsWorld;
+import net.raphimc.viabedrock.protocol.data.ProtocolConstants;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
+import net.raphimc.viaproxy.saves.impl.accounts.BedrockAccount;
+import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
+import net.raphimc.viaproxy.util.AsyncLoadingCache;
+import net.raphimc.viaproxy.util.Metrics;
+import net.raphimc.viaproxy.util.SharedHttpClient;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Shared cache of the Realms availability and the world lists per account and version type.<br>
+ * Used by the Realms tab and the {@link RealmsResolver}, so reopening the tab or restarting the proxy does not query the Realms API from scratch.
+ * Concurrent requests share a single call and stale values are refreshed in the background.
+ */
+public class RealmsDirectory {
+
+    private static final long CALL_TIMEOUT_SECONDS = 10;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_SECONDS = 2;
+    private static final int CACHE_SIZE = 16; // One entry per account and edition
+
+    private static final AsyncLoadingCache<Key, Boolean> AVAILABILITY = new AsyncLoadingCache<>(key -> createService(key).thenCompose(realmsService -> withRetries("availability check", realmsService::isAvailable)), TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(30), CACHE_SIZE);
+    private static final AsyncLoadingCache<Key, List<RealmsWorld>> WORLDS = new AsyncLoadingCache<>(key -> createService(key).thenCompose(realmsService -> withRetries("world list", realmsService::getWorlds)).thenApply(Collections::unmodifiableList), TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(10), CACHE_SIZE);
+
+    /**
+     * @param account The account which has access to the realms
+     * @param version The Java Edition version of the realms (Ignored for Bedrock accounts)
+     * @return A future which completes with a new Realms service of the account once the account has been refreshed
+     */
+    public static CompletableFuture<AbstractRealmsService> getService(final Account account, final ProtocolVersion version) {
+        return createService(Key.of(account, version));
+    }
+
+    public static CompletableFuture<Boolean> isAvailable(final Account account, final ProtocolVersion version) {
+        return AVAILABILITY.get(Key.of(account, version));
+    }
+
+    /**
+     * @param account The account which has access to the realms
+     * @param version The Java Edition version of the realms (Ignored for Bedrock accounts)
+     * @return A future which completes with the unmodifiable list of the realms the account has access to
+     */
+    public static CompletableFuture<List<RealmsWorld>> getWorlds(final Account account, final ProtocolVersion version) {
+        return WORLDS.get(Key.of(account, version));
+    }
+
+    /**
+     * Reloads the availability and the world list in the background. Until the reload is done, the current values are still returned.
+     *
+     * @param account The account which has access to the realms
+     * @param version The Java Edition version of the realms (Ignored for Bedrock accounts)
+     * @return A future which completes with the reloaded world list
+     */
+    public static CompletableFuture<List<RealmsWorld>> refresh(final Account account, final ProtocolVersion version) {
+        final Key key = Key.of(account, version);
+        return AVAILABILITY.refresh(key).thenCompose(available -> WORLDS.refresh(key));
+    }
+
+    public static void invalidateAll() {
+        AVAILABILITY.invalidateAll();
+        WORLDS.invalidateAll();
+    }
+
+    /**
+     * Creates a new service for every use, because the service keeps the tokens of the account it has been created with.<br>
+     * Refreshing the account is a no-op as long as its tokens are still valid.
+     */
+    private static CompletableFuture<AbstractRealmsService> createService(final Key key) {
+        if (!(key.account instanceof MicrosoftAccount) && !(key.account instanceof BedrockAccount)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Realms can only be used with a Microsoft or Bedrock account"));
+        }
+
+        return withRetries("account refresh", () -> CompletableFuture.runAsync(() -> {
+            try {
+                ViaProxy.getSaveManager().accountsSave.ensureRefreshed(key.account);
+            } catch (Throwable e) {
+                throw new CompletionException(e);
+            }
+        })).thenApply(v -> {
+            if (key.account instanceof MicrosoftAccount microsoftAccount) {
+                return new JavaRealmsService(SharedHttpClient.get(), key.clientVersion, microsoftAccount.getMcProfile());
+            } else {
+                return new BedrockRealmsService(SharedHttpClient.get(), key.clientVersion, ((BedrockAccount) key.account).getRealmsXsts());
+            }
+        });
+    }
+
+    /**
+     * Runs a Realms API call with a timeout and retries it if it fails.
+     *
+     * @param description The description of the call used for logging
+     * @param call        The call to run
+     * @return A future which completes with the result of the first successful attempt
+     */
+    static <T> CompletableFuture<T> withRetries(final String description, final Supplier<CompletableFuture<T>> call) {
+        return attempt(description, call, 1);
+    }
+
+    private static <T> CompletableFuture<T> attempt(final String description, final Supplier<CompletableFuture<T>> call, final int attempt) {
+        final long start = System.currentTimeMillis();
+        return call.get().orTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS).handle((result, throwable) -> {
+            Metrics.increment("realms.calls");
+            Metrics.add("realms.call_time_ms", System.currentTimeMillis() - start);
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+
+            final Throwable cause = unwrap(throwable);
+            Metrics.increment(cause instanceof TimeoutException ? "realms.timeouts" : "realms.failures");
+            if (attempt >= MAX_ATTEMPTS || cause instanceof RealmsRequestException || cause instanceof IllegalStateException) {
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            Metrics.increment("realms.retries");
+            Logger.LOGGER.warn("Realms " + description + " failed (attempt " + attempt + "/" + MAX_ATTEMPTS + "): " + cause);
+            // Each retry waits one delay longer than the previous one
+            return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(RETRY_DELAY_SECONDS * attempt, TimeUnit.SECONDS)).thenCompose(v -> attempt(description, call, attempt + 1));
+        }).thenCompose(f -> f);
+    }
+
+    public static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private record Key(Account account, String clientVersion) {
+
+        private static Key of(final Account account, final ProtocolVersion version) {
+            if (account instanceof BedrockAccount) {
+                return new Key(account, ProtocolConstants.BEDROCK_VERSION_NAME);
+            } else {
+                return new Key(account, Iterables.getLast(version.getIncludedVersions()));
+            }
+        }
+
+    }
+
+}
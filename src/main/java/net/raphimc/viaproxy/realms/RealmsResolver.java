@@ -0,0 +1,455 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
+import net.raphimc.minecraftauth.service.realms.model.RealmsWorld;
+import net.raphimc.viabedrock.api.BedrockProtocolVersion;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
+import net.raphimc.viaproxy.saves.impl.accounts.BedrockAccount;
+import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
+import net.raphimc.viaproxy.util.AddressUtil;
+import net.raphimc.viaproxy.util.AsyncLoadingCache;
+import net.raphimc.viaproxy.util.Metrics;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.net.SocketAddress;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves realm addresses in the background, so the proxy can be started without waiting for the Realms API.<br>
+ * Java Edition realms are resolved using a Microsoft account and Bedrock Edition realms (If the target version is {@link BedrockProtocolVersion#bedrockLatest}) using a Bedrock account.<br>
+ * Joining a realm boots it, so addresses are only resolved when a client connects (Or by the opt-in pre-wake) and re-resolved if connecting to them fails.<br>
+ * The background task only keeps the availability and the world list up to date.
+ * <p>
+ * Besides the configured realm, clients can select any realm the account has access to by connecting with a hostname like {@code selector.realms.proxy-hostname}.
+ * The selector can be the id of the realm, the name of its owner or its name (Case-insensitive, characters which are not allowed in hostnames are replaced with dashes).
+ */
+public class RealmsResolver {
+
+    private static final long KEEP_WARM_INTERVAL_SECONDS = 60;
+    private static final long ADDRESS_REFRESH_MILLIS = Long.MAX_VALUE; // Refreshing an address joins the realm
+    private static final long ADDRESS_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int ADDRESS_CACHE_SIZE = 256;
+    private static final String HOSTNAME_MARKER = ".realms.";
+
+    private static volatile Session session;
+    private static ScheduledFuture<?> keepWarmTask;
+    private static ScheduledFuture<?> prewakeTask;
+
+    /**
+     * Starts resolving the address of the realm owned by the given player. Any previous state is discarded.
+     *
+     * @param account       The account which has access to the realms
+     * @param targetVersion The version which is used to connect to the realms
+     * @param ownerName     The name of the owner of the default realm or an empty string if clients have to select a realm using the hostname
+     */
+    public static synchronized void start(final Account account, final ProtocolVersion targetVersion, final String ownerName) {
+        stop();
+        session = new Session(account, targetVersion, ownerName);
+        if (!ownerName.isBlank()) {
+            Logger.LOGGER.info("Using the realm owned by " + ownerName);
+        }
+        final Session currentSession = session;
+        keepWarmTask = GlobalEventExecutor.INSTANCE.scheduleWithFixedDelay(() -> currentSession.keepWarm(), 0, KEEP_WARM_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Periodically wakes up the configured realm, so the first player connecting after it went idle does not have to wait for it to boot.
+     *
+     * @param intervalMinutes The interval in minutes
+     * @param join            Whether to join the realm (Which boots it) or to only refresh the availability and the world list
+     * @param schedule        The time windows in which the realm should be woken up
+     */
+    public static synchronized void startPrewake(final int intervalMinutes, final boolean join, final PrewakeSchedule schedule) {
+        final Session currentSession = session;
+        if (currentSession == null || currentSession.ownerName.isBlank()) return;
+
+        if (prewakeTask != null) {
+            prewakeTask.cancel(false);
+        }
+        Logger.LOGGER.info("Waking up the realm owned by " + currentSession.ownerName + " every " + intervalMinutes + " minutes" + (schedule == PrewakeSchedule.ALWAYS ? "" : " (" + schedule + ")"));
+        prewakeTask = GlobalEventExecutor.INSTANCE.scheduleWithFixedDelay(() -> {
+            if (schedule.isActive(LocalTime.now())) {
+                currentSession.prewake(join);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stop() {
+        if (keepWarmTask != null) {
+            keepWarmTask.cancel(false);
+            keepWarmTask = null;
+        }
+        if (prewakeTask != null) {
+            prewakeTask.cancel(false);
+            prewakeTask = null;
+        }
+        session = null;
+    }
+
+    public static boolean isEnabled() {
+        return session != null;
+    }
+
+    /**
+     * @return A future which completes with the address of the configured realm once it is known
+     */
+    public static CompletableFuture<SocketAddress> getAddress() {
+        final Session session = RealmsResolver.session;
+        if (session == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Realms are not enabled"));
+        } else if (session.ownerName.isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No realm selected. Connect using selector" + HOSTNAME_MARKER + "hostname"));
+        }
+        final long start = System.currentTimeMillis();
+        return session.resolve(session.ownerName).thenApply(address -> {
+            if (!address.equals(session.lastDefaultAddress)) {
+                session.lastDefaultAddress = address;
+                Logger.LOGGER.info("Resolved the realm address to " + AddressUtil.toString(address) + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+            return address;
+        });
+    }
+
+    /**
+     * Resolves the address of a realm the account has access to.
+     *
+     * @param selector The id, owner name or name of the realm
+     * @return A future which completes with the address of the realm
+     */
+    public static CompletableFuture<SocketAddress> resolve(final String selector) {
+        final Session session = RealmsResolver.session;
+        if (session == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Realms are not enabled"));
+        }
+        return session.resolve(selector);
+    }
+
+    /**
+     * Describes the current state of the resolver for the "realms" console command.
+     *
+     * @return The lines to print
+     */
+    public static List<String> describe() {
+        final Session session = RealmsResolver.session;
+        final List<String> lines = new ArrayList<>();
+        if (session == null) {
+            lines.add("Realms are not enabled");
+            return lines;
+        }
+
+        lines.add("Account: " + (session.account != null ? session.account.getDisplayString() : "none") + " | Version: " + session.targetVersion.getName() + " | Default realm owner: " + (session.ownerName.isBlank() ? "none" : session.ownerName));
+        for (RealmsWorld world : session.worldsById.values()) {
+            final SocketAddress address = session.addresses.getIfPresent(world.getId());
+            lines.add(" " + world.getId() + " | " + world.getOwnerName() + " - " + world.getName() + " (" + world.getState() + ") -> " + (address != null ? AddressUtil.toString(address) : "not resolved"));
+        }
+        return lines;
+    }
+
+    /**
+     * Reloads the world list and the addresses of all resolved realms in the background.
+     */
+    public static void refreshAll() {
+        final Session session = RealmsResolver.session;
+        if (session == null) return;
+
+        RealmsDirectory.refresh(session.account, session.targetVersion).thenAccept(session::indexWorlds);
+        for (Long worldId : session.worldsById.keySet()) {
+            if (session.addresses.getIfPresent(worldId) != null) {
+                session.addresses.refresh(worldId);
+            }
+        }
+    }
+
+    /**
+     * Extracts the realm selector from the hostname a client connected with.
+     *
+     * @param hostname The hostname from the handshake packet
+     * @return The realm selector or null if the hostname does not select a realm
+     */
+    public static String parseSelector(final String hostname) {
+        final String lowerHostname = hostname.toLowerCase(Locale.ROOT);
+        final int markerIndex = lowerHostname.lastIndexOf(HOSTNAME_MARKER); // The proxy hostname follows the last marker
+        if (markerIndex <= 0) return null;
+        return lowerHostname.substring(0, markerIndex);
+    }
+
+    /**
+     * Re-resolves a realm address after connecting to it failed. Concurrent calls share the same re-resolution.
+     *
+     * @param failedAddress The address which could not be connected to
+     * @return A future which completes with the new address or null if the failed address is not a realm address
+     */
+    public static CompletableFuture<SocketAddress> reresolve(final SocketAddress failedAddress) {
+        final Session session = RealmsResolver.session;
+        if (session == null) return null;
+        return session.reresolve(failedAddress);
+    }
+
+    private static class Session {
+
+        private final Account account;
+        private final ProtocolVersion targetVersion;
+        private final String ownerName;
+        private final AsyncLoadingCache<Long, SocketAddress> addresses;
+        private final Map<Long, RealmsWorld> worldsById = new ConcurrentHashMap<>();
+        private final Map<SocketAddress, Long> worldIdsByAddress = new ConcurrentHashMap<>();
+        private volatile WorldIndex worldIndex;
+        private volatile SocketAddress lastDefaultAddress;
+
+        private Session(final Account account, final ProtocolVersion targetVersion, final String ownerName) {
+            this.account = account;
+            this.targetVersion = targetVersion;
+            this.ownerName = ownerName;
+            this.addresses = new AsyncLoadingCache<>(this::joinWorld, ADDRESS_REFRESH_MILLIS, ADDRESS_EXPIRE_MILLIS, ADDRESS_CACHE_SIZE);
+        }
+
+        private CompletableFuture<SocketAddress> resolve(final String selector) {
+            final long start = System.currentTimeMillis();
+            return this.loadWorlds().thenCompose(worldIndex -> {
+                final RealmsWorld world = worldIndex.find(selector);
+                if (world == null) {
+                    throw new IllegalStateException("No realm matching " + selector + " found");
+                }
+                return this.addresses.get(world.getId());
+            }).whenComplete((address, throwable) -> {
+                Metrics.increment(throwable == null ? "realms.resolve.count" : "realms.resolve.failed");
+                Metrics.add("realms.resolve.time_ms", System.currentTimeMillis() - start);
+            });
+        }
+
+        private CompletableFuture<SocketAddress> reresolve(final SocketAddress failedAddress) {
+            final Long worldId = this.worldIdsByAddress.get(failedAddress);
+            if (worldId == null) return null;
+
+            final SocketAddress currentAddress = this.addresses.getIfPresent(worldId);
+            if (currentAddress != null && !currentAddress.equals(failedAddress)) {
+                return CompletableFuture.completedFuture(currentAddress); // Already re-resolved by another connection
+            }
+            Metrics.increment("realms.reresolve");
+            return this.addresses.refresh(worldId);
+        }
+
+        /**
+         * Keeps the availability and the world list loaded and refreshed. This doesn't join any realm, because that would boot it.
+         */
+        private void keepWarm() {
+            this.loadWorlds().whenComplete((worldIndex, throwable) -> {
+                if (throwable == null) {
+                    if (!this.ownerName.isBlank() && worldIndex.find(this.ownerName) == null) {
+                        Logger.LOGGER.warn("No realm matching " + this.ownerName + " found");
+                    }
+                    return;
+                }
+
+                final Throwable cause = RealmsDirectory.unwrap(throwable);
+                if (cause instanceof RealmsRequestException realmsRequestException && realmsRequestException.getErrorCode() == RealmsRequestException.TOS_NOT_ACCEPTED) {
+                    Logger.LOGGER.error("Failed to load the realms: The Realms terms of service have not been accepted for this account. Accept them in the ViaProxy GUI or the Minecraft client.");
+                } else {
+                    Logger.LOGGER.error("Failed to load the realms, retrying in " + KEEP_WARM_INTERVAL_SECONDS + " seconds: " + cause.getMessage());
+                }
+            });
+        }
+
+        /**
+         * Wakes up the configured realm and records how long it took until it was ready.
+         *
+         * @param join Whether to join the realm or to only refresh the availability and the world list
+         */
+        private void prewake(final boolean join) {
+            final long start = System.currentTimeMillis();
+            final CompletableFuture<String> future;
+            if (join) {
+                future = this.loadWorlds().thenCompose(worldIndex -> {
+                    final RealmsWorld world = worldIndex.find(this.ownerName);
+                    if (world == null) {
+                        throw new IllegalStateException("No realm matching " + this.ownerName + " found");
+                    }
+                    return this.addresses.refresh(world.getId()).thenApply(address -> {
+                        final long timeToReady = System.currentTimeMillis() - start;
+                        Metrics.increment("realms.prewake." + world.getId() + ".count");
+                        Metrics.add("realms.prewake." + world.getId() + ".time_to_ready_ms", timeToReady);
+                        if (!address.equals(this.lastDefaultAddress)) {
+                            this.lastDefaultAddress = address;
+                            Logger.LOGGER.info("The realm address changed to " + AddressUtil.toString(address));
+                        }
+                        return "ready at " + AddressUtil.toString(address) + " after " + timeToReady + "ms";
+                    });
+                });
+            } else {
+                future = RealmsDirectory.refresh(this.account, this.targetVersion).thenApply(worlds -> {
+                    final RealmsWorld world = this.indexWorlds(worlds).find(this.ownerName);
+                    if (world == null) {
+                        throw new IllegalStateException("No realm matching " + this.ownerName + " found");
+                    }
+                    Metrics.increment("realms.prewake." + world.getId() + ".count");
+                    return world.getState() + " (checked in " + (System.currentTimeMillis() - start) + "ms)";
+                });
+            }
+
+            future.whenComplete((state, throwable) -> {
+                if (throwable == null) {
+                    Logger.LOGGER.debug("Woke up the realm owned by " + this.ownerName + ": " + state);
+                } else {
+                    Metrics.increment("realms.prewake.failed");
+                    Logger.LOGGER.warn("Failed to wake up the realm owned by " + this.ownerName + ": " + RealmsDirectory.unwrap(throwable).getMessage());
+                }
+            });
+        }
+
+        private CompletableFuture<WorldIndex> loadWorlds() {
+            if (this.targetVersion.equals(BedrockProtocolVersion.bedrockLatest) ? !(this.account instanceof BedrockAccount) : !(this.account instanceof MicrosoftAccount)) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Realms for " + this.targetVersion.getName() + " require a selected " + (this.targetVersion.equals(BedrockProtocolVersion.bedrockLatest) ? "Bedrock" : "Microsoft") + " account"));
+            }
+
+            // The availability check and the world list only depend on the service, so both are requested at the same time
+            final CompletableFuture<Boolean> available = RealmsDirectory.isAvailable(this.account, this.targetVersion);
+            final CompletableFuture<List<RealmsWorld>> worlds = RealmsDirectory.getWorlds(this.account, this.targetVersion);
+            return available.thenCombine(worlds, (isAvailable, worldList) -> {
+                if (!isAvailable) {
+                    throw new IllegalStateException("Realms are not available for " + this.targetVersion.getName());
+                }
+                return this.indexWorlds(worldList);
+            });
+        }
+
+        private synchronized WorldIndex indexWorlds(final List<RealmsWorld> worlds) {
+            if (this.worldIndex == null || this.worldIndex.source != worlds) { // The directory hands out a new list after each refresh
+                for (RealmsWorld world : worlds) {
+                    this.worldsById.put(world.getId(), world);
+                }
+                this.worldIndex = new WorldIndex(worlds);
+            }
+            return this.worldIndex;
+        }
+
+        private CompletableFuture<SocketAddress> joinWorld(final long worldId) {
+            final RealmsWorld world = this.worldsById.get(worldId);
+            if (world == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Unknown realm id: " + worldId));
+            }
+
+            return RealmsDirectory.getService(this.account, this.targetVersion).thenCompose(realmsService -> RealmsDirectory.withRetries("join", () -> realmsService.joinWorld(world))).thenApply(address -> {
+                final SocketAddress socketAddress = AddressUtil.parse(address, this.targetVersion);
+                this.worldIdsByAddress.put(socketAddress, worldId);
+                return socketAddress;
+            });
+        }
+
+    }
+
+    /**
+     * Local time windows in which the realm is woken up. Windows ending before they start span midnight.
+     */
+    public static class PrewakeSchedule {
+
+        public static final PrewakeSchedule ALWAYS = new PrewakeSchedule(new LocalTime[0][]);
+
+        private final LocalTime[][] windows;
+
+        private PrewakeSchedule(final LocalTime[][] windows) {
+            this.windows = windows;
+        }
+
+        /**
+         * @param schedule Comma separated time windows like {@code 07:00-12:00, 16:00-23:30}
+         * @return The parsed schedule
+         * @throws IllegalArgumentException If the schedule is invalid
+         */
+        public static PrewakeSchedule parse(final String schedule) {
+            if (schedule.isBlank()) return ALWAYS;
+
+            final List<LocalTime[]> windows = new ArrayList<>();
+            for (String window : schedule.split(",")) {
+                final String[] parts = window.trim().split("-");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected start-end but got " + window.trim());
+                }
+                try {
+                    windows.add(new LocalTime[]{LocalTime.parse(parts[0].trim()), LocalTime.parse(parts[1].trim())});
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid time in " + window.trim());
+                }
+            }
+            return new PrewakeSchedule(windows.toArray(new LocalTime[0][]));
+        }
+
+        public boolean isActive(final LocalTime time) {
+            if (this.windows.length == 0) return true;
+
+            for (LocalTime[] window : this.windows) {
+                if (window[0].isBefore(window[1]) ? !time.isBefore(window[0]) && time.isBefore(window[1]) : !time.isBefore(window[0]) || time.isBefore(window[1])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            final StringJoiner joiner = new StringJoiner(", ");
+            for (LocalTime[] window : this.windows) {
+                joiner.add(window[0] + "-" + window[1]);
+            }
+            return joiner.toString();
+        }
+
+    }
+
+    /**
+     * Lookup table of the realms by id, owner name and name.
+     */
+    private static class WorldIndex {
+
+        private final List<RealmsWorld> source;
+        private final Map<String, RealmsWorld> worlds = new HashMap<>();
+
+        private WorldIndex(final List<RealmsWorld> worlds) {
+            this.source = worlds;
+            // Ids take precedence over owner names, which take precedence over names. If several realms share a selector, the first one in the list is used
+            for (RealmsWorld world : worlds) {
+                this.worlds.putIfAbsent(String.valueOf(world.getId()), world);
+            }
+            for (RealmsWorld world : worlds) {
+                if (world.getOwnerName() != null) this.worlds.putIfAbsent(normalize(world.getOwnerName()), world);
+            }
+            for (RealmsWorld world : worlds) {
+                if (world.getName() != null) this.worlds.putIfAbsent(normalize(world.getName()), world);
+            }
+        }
+
+        private RealmsWorld find(final String selector) {
+            return this.worlds.get(normalize(selector));
+        }
+
+        private static String normalize(final String s) {
+            return s.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        }
+
+    }
+
+}
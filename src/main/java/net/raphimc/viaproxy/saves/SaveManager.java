@@ -25,27 +25,44 @@ import net.raphimc.viaproxy.saves.impl.AccountsSaveV3;
 import net.raphimc.viaproxy.saves.impl.UISave;
 import net.raphimc.viaproxy.util.logging.Logger;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SaveManager {
 
     private static final File SAVE_FILE = new File("saves.json");
     private static final Gson GSON = new Gson();
+    private static final long WRITE_DELAY_MILLIS = 1_000;
 
     public final AccountsSaveV3 accountsSave = new AccountsSaveV3();
     public final UISave uiSave = new UISave();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "SaveManager-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public SaveManager() {
         this.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "SaveManager-Flush"));
     }
 
     public void load() {
         try {
             if (!SAVE_FILE.exists()) {
-                SAVE_FILE.createNewFile();
-                this.save();
+                this.dirty.set(true);
+                this.flush();
             }
 
             final FileReader reader = new FileReader(SAVE_FILE);
@@ -73,31 +90,73 @@ public class SaveManager {
         }
     }
 
+    /**
+     * Marks the saves as changed. They are written to disk in the background after a short delay, so multiple changes in a row only cause a single write.
+     */
     public void save() {
+        if (this.dirty.compareAndSet(false, true)) {
+            this.writer.schedule(this::flush, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the saves to disk now if they have changed since the last write.
+     */
+    public synchronized void flush() {
+        if (!this.dirty.getAndSet(false)) return;
+
         try {
+            // Every save serializes itself under its own lock, so the resulting json is an immutable snapshot
             final JsonObject saveObject = new JsonObject();
-            RStream
-                    .of(this)
-                    .fields()
-                    .filter(field -> AbstractSave.class.isAssignableFrom(field.type()))
-                    .forEach(field -> {
-                        final AbstractSave save = field.get();
-                        try {
-                            final JsonElement saveData = save.save();
-                            if (saveData != null) {
-                                saveObject.add(save.getName(), saveData);
-                            }
-                        } catch (Throwable e) {
-                            Logger.LOGGER.error("Failed to save save " + save.getName(), e);
-                        }
-                    });
+            for (AbstractSave save : this.getSaves()) {
+                final JsonElement saveData;
+                try {
+                    saveData = save.save();
+                } catch (Throwable e) {
+                    // Writing the file without this save would wipe it, so keep the old file and try again later
+                    Logger.LOGGER.error("Failed to save save " + save.getName() + ". Retrying later.", e);
+                    this.markDirtyForRetry();
+                    return;
+                }
+                if (saveData != null) {
+                    saveObject.add(save.getName(), saveData);
+                }
+            }
 
-            final FileWriter writer = new FileWriter(SAVE_FILE);
-            GSON.toJson(saveObject, writer);
-            writer.close();
+            // Write to a temporary file first, so a crash while writing can't leave a truncated save file behind
+            final File tempFile = new File(SAVE_FILE.getAbsoluteFile().getParentFile(), SAVE_FILE.getName() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tempFile); Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
+                GSON.toJson(saveObject, writer);
+                writer.flush();
+                fos.getFD().sync();
+            }
+            try {
+                Files.move(tempFile.toPath(), SAVE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), SAVE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (Throwable e) {
             Logger.LOGGER.error("Failed to save saves to file", e);
+            this.markDirtyForRetry();
         }
     }
 
+    private void markDirtyForRetry() {
+        this.dirty.set(true);
+        try {
+            this.writer.schedule(this::flush, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    private List<AbstractSave> getSaves() {
+        final List<AbstractSave> saves = new ArrayList<>();
+        RStream
+                .of(this)
+                .fields()
+                .filter(field -> AbstractSave.class.isAssignableFrom(field.type()))
+                .forEach(field -> saves.add(field.get()));
+        return saves;
+    }
+
 }
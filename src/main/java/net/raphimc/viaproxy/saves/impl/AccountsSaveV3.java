@@ -22,15 +22,24 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.saves.AbstractSave;
-import net.raphimc.viaproxy.saves.impl.accounts.Account;
-import net.raphimc.viaproxy.saves.impl.accounts.OfflineAccount;
+import net.raphimc.viaproxy.saves.impl.accounts.*;
+import net.raphimc.viaproxy.util.logging.Logger;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class AccountsSaveV3 extends AbstractSave {
 
+    private static final Map<String, Function<JsonObject, Account>> ACCOUNT_TYPES = Map.of(
+            OfflineAccount.class.getName(), OfflineAccount::new,
+            ClassicAccount.class.getName(), ClassicAccount::new,
+            MicrosoftAccount.class.getName(), MicrosoftAccount::new,
+            BedrockAccount.class.getName(), BedrockAccount::new
+    );
+
     private List<Account> accounts = new ArrayList<>();
 
     public AccountsSaveV3() {
@@ -38,19 +47,25 @@ public class AccountsSaveV3 extends AbstractSave {
     }
 
     @Override
-    public void load(JsonElement jsonElement) throws Exception {
+    public synchronized void load(JsonElement jsonElement) throws Exception {
+        final long start = System.currentTimeMillis();
         this.accounts = new ArrayList<>();
         for (JsonElement element : jsonElement.getAsJsonArray()) {
             final JsonObject jsonObject = element.getAsJsonObject();
             final String type = jsonObject.get("accountType").getAsString();
-            final Class<?> clazz = Class.forName(type);
-            final Account account = (Account) clazz.getConstructor(JsonObject.class).newInstance(jsonObject);
-            this.accounts.add(account);
+            final Function<JsonObject, Account> constructor = ACCOUNT_TYPES.get(type);
+            if (constructor != null) {
+                this.accounts.add(constructor.apply(jsonObject));
+            } else { // Account types added by plugins
+                final Class<?> clazz = Class.forName(type);
+                this.accounts.add((Account) clazz.getConstructor(JsonObject.class).newInstance(jsonObject));
+            }
         }
+        Logger.LOGGER.info("Loaded " + this.accounts.size() + " accounts in " + (System.currentTimeMillis() - start) + "ms");
     }
 
     @Override
-    public JsonElement save() {
+    public synchronized JsonElement save() {
         final JsonArray array = new JsonArray();
         for (Account account : this.accounts) {
             final JsonObject jsonObject = account.toJson();
@@ -60,36 +75,42 @@ public class AccountsSaveV3 extends AbstractSave {
         return array;
     }
 
-    public Account addAccount(final String username) {
+    public synchronized Account addAccount(final String username) {
         final Account account = new OfflineAccount(username);
         this.accounts.add(account);
         return account;
     }
 
-    public Account addAccount(final Account account) {
+    public synchronized Account addAccount(final Account account) {
         this.accounts.add(account);
         return account;
     }
 
-    public Account addAccount(final int index, final Account account) {
+    public synchronized Account addAccount(final int index, final Account account) {
         this.accounts.add(index, account);
         return account;
     }
 
-    public void removeAccount(final Account account) {
+    public synchronized void removeAccount(final Account account) {
         this.accounts.remove(account);
     }
 
     public void ensureRefreshed(final Account account) throws Throwable {
-        synchronized (this) {
+        synchronized (account) { // Different accounts (For example a Java and a Bedrock account) can be refreshed concurrently
             if (account.refresh()) {
                 ViaProxy.getSaveManager().save();
             }
         }
     }
 
-    public List<Account> getAccounts() {
-        return Collections.unmodifiableList(this.accounts);
+    /**
+     * The returned list is a copy and is not updated when accounts are added or removed.<br>
+     * This allows iterating over it while other threads (For example the UI) modify the accounts.
+     *
+     * @return An unmodifiable snapshot of the accounts
+     */
+    public synchronized List<Account> getAccounts() {
+        return Collections.unmodifiableList(new ArrayList<>(this.accounts));
     }
 
 }
@@ -37,40 +37,41 @@ public class UISave extends AbstractSave {
     }
 
     @Override
-    public void load(JsonElement jsonElement) {
+    public synchronized void load(JsonElement jsonElement) {
         this.values.clear();
         for (Map.Entry<String, JsonElement> entry : jsonElement.getAsJsonObject().entrySet()) this.values.put(entry.getKey(), entry.getValue().getAsString());
     }
 
     @Override
-    public JsonElement save() {
+    public synchronized JsonElement save() {
         JsonObject jsonObject = new JsonObject();
         for (Map.Entry<String, String> entry : this.values.entrySet()) jsonObject.addProperty(entry.getKey(), entry.getValue());
         return jsonObject;
     }
 
-    public void put(final String key, final String value) {
+    public synchronized void put(final String key, final String value) {
         this.values.put(key, value);
     }
 
-    public String get(final String key) {
+    public synchronized String get(final String key) {
         return this.values.get(key);
     }
 
     public void loadTextField(final String key, final JTextField textField) {
-        if (this.values.containsKey(key)) {
+        final String value = this.get(key);
+        if (value != null) {
             try {
-                String value = this.values.get(key);
-                if (value != null) textField.setText(value);
+                textField.setText(value);
             } catch (Throwable ignored) {
             }
         }
     }
 
     public void loadComboBox(final String key, final JComboBox<?> comboBox) {
-        if (this.values.containsKey(key)) {
+        final String value = this.get(key);
+        if (value != null) {
             try {
-                int index = Integer.parseInt(this.values.get(key));
+                int index = Integer.parseInt(value);
                 if (index >= 0 && index < comboBox.getItemCount()) comboBox.setSelectedIndex(index);
             } catch (Throwable ignored) {
             }
@@ -78,9 +79,9 @@ public class UISave extends AbstractSave {
     }
 
     public void loadComboBoxProtocolVersion(final String key, final JComboBox<ProtocolVersion> comboBox) {
-        if (this.values.containsKey(key)) {
+        final String value = this.get(key);
+        if (value != null) {
             try {
-                String value = this.values.get(key);
                 ProtocolVersion version = ProtocolVersion.getClosest(value);
                 if (version != null) {
                     comboBox.setSelectedItem(version);
@@ -91,9 +92,10 @@ public class UISave extends AbstractSave {
     }
 
     public void loadSpinner(final String key, final JSpinner spinner) {
-        if (this.values.containsKey(key)) {
+        final String stringValue = this.get(key);
+        if (stringValue != null) {
             try {
-                Integer value = Integer.valueOf(this.values.get(key));
+                Integer value = Integer.valueOf(stringValue);
                 if (spinner.getModel() instanceof SpinnerNumberModel) {
                     SpinnerNumberModel model = (SpinnerNumberModel) spinner.getModel();
                     Comparable<Integer> minimum = (Comparable<Integer>) model.getMinimum();
@@ -108,9 +110,10 @@ public class UISave extends AbstractSave {
     }
 
     public void loadCheckBox(final String key, final JCheckBox checkBox) {
-        if (this.values.containsKey(key)) {
+        final String stringValue = this.get(key);
+        if (stringValue != null) {
             try {
-                boolean value = Boolean.parseBoolean(this.values.get(key));
+                boolean value = Boolean.parseBoolean(stringValue);
                 checkBox.setSelected(value);
             } catch (Throwable ignored) {
             }
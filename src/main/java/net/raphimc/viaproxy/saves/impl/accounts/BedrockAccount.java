@@ -25,6 +25,7 @@ import net.raphimc.minecraftauth.step.bedrock.StepPlayFabToken;
 import net.raphimc.minecraftauth.step.bedrock.session.StepFullBedrockSession;
 import net.raphimc.minecraftauth.step.xbl.StepXblXstsToken;
 import net.raphimc.minecraftauth.util.MicrosoftConstants;
+import net.raphimc.viaproxy.util.SharedHttpClient;
 
 import java.util.UUID;
 
@@ -37,10 +38,19 @@ public class BedrockAccount extends Account {
             .sisuTitleAuthentication(MicrosoftConstants.BEDROCK_XSTS_RELYING_PARTY)
             .buildMinecraftBedrockChainStep(true, true);
 
-    private StepFullBedrockSession.FullBedrockSession bedrockSession;
+    private volatile StepFullBedrockSession.FullBedrockSession bedrockSession;
+    private JsonObject bedrockSessionJson;
+    private final Object bedrockSessionLock = new Object();
+    private String cachedName;
+    private UUID cachedUuid;
 
     public BedrockAccount(final JsonObject jsonObject) {
-        this.bedrockSession = DEVICE_CODE_LOGIN.fromJson(jsonObject.getAsJsonObject("bedrockSession"));
+        // The session is parsed on first use, because parsing all sessions makes loading large account lists slow
+        this.bedrockSessionJson = jsonObject.getAsJsonObject("bedrockSession");
+        if (jsonObject.has("name") && jsonObject.has("uuid")) {
+            this.cachedName = jsonObject.get("name").getAsString();
+            this.cachedUuid = UUID.fromString(jsonObject.get("uuid").getAsString());
+        }
     }
 
     public BedrockAccount(final StepFullBedrockSession.FullBedrockSession bedrockSession) {
@@ -50,30 +60,46 @@ public class BedrockAccount extends Account {
     @Override
     public JsonObject toJson() {
         final JsonObject jsonObject = new JsonObject();
-        jsonObject.add("bedrockSession", DEVICE_CODE_LOGIN.toJson(this.bedrockSession));
+        synchronized (this.bedrockSessionLock) {
+            jsonObject.add("bedrockSession", this.bedrockSession != null ? DEVICE_CODE_LOGIN.toJson(this.bedrockSession) : this.bedrockSessionJson);
+        }
+        jsonObject.addProperty("name", this.getName());
+        jsonObject.addProperty("uuid", this.getUUID().toString());
         return jsonObject;
     }
 
     @Override
     public String getName() {
-        return this.bedrockSession.getMcChain().getDisplayName();
+        if (this.bedrockSession == null && this.cachedName != null) return this.cachedName;
+        return this.getBedrockSession().getMcChain().getDisplayName();
     }
 
     @Override
     public UUID getUUID() {
-        return this.bedrockSession.getMcChain().getId();
+        if (this.bedrockSession == null && this.cachedUuid != null) return this.cachedUuid;
+        return this.getBedrockSession().getMcChain().getId();
     }
 
     public StepMCChain.MCChain getMcChain() {
-        return this.bedrockSession.getMcChain();
+        return this.getBedrockSession().getMcChain();
     }
 
     public StepPlayFabToken.PlayFabToken getPlayFabToken() {
-        return this.bedrockSession.getPlayFabToken();
+        return this.getBedrockSession().getPlayFabToken();
     }
 
     public StepXblXstsToken.XblXsts<?> getRealmsXsts() {
-        return this.bedrockSession.getRealmsXsts();
+        return this.getBedrockSession().getRealmsXsts();
+    }
+
+    private StepFullBedrockSession.FullBedrockSession getBedrockSession() {
+        synchronized (this.bedrockSessionLock) {
+            if (this.bedrockSession == null) {
+                this.bedrockSession = DEVICE_CODE_LOGIN.fromJson(this.bedrockSessionJson);
+                this.bedrockSessionJson = null;
+            }
+            return this.bedrockSession;
+        }
     }
 
     @Override
@@ -85,7 +111,7 @@ public class BedrockAccount extends Account {
     public boolean refresh() throws Exception {
         if (!super.refresh()) return false;
 
-        this.bedrockSession = DEVICE_CODE_LOGIN.refresh(MinecraftAuth.createHttpClient(), this.bedrockSession);
+        this.bedrockSession = DEVICE_CODE_LOGIN.refresh(SharedHttpClient.get(), this.getBedrockSession());
         return true;
     }
 
@@ -24,6 +24,7 @@ import net.raphimc.minecraftauth.step.java.StepMCProfile;
 import net.raphimc.minecraftauth.step.java.StepPlayerCertificates;
 import net.raphimc.minecraftauth.step.java.session.StepFullJavaSession;
 import net.raphimc.minecraftauth.util.MicrosoftConstants;
+import net.raphimc.viaproxy.util.SharedHttpClient;
 
 import java.util.UUID;
 
@@ -36,10 +37,19 @@ public class MicrosoftAccount extends Account {
             .sisuTitleAuthentication(MicrosoftConstants.JAVA_XSTS_RELYING_PARTY)
             .buildMinecraftJavaProfileStep(true);
 
-    private StepFullJavaSession.FullJavaSession javaSession;
+    private volatile StepFullJavaSession.FullJavaSession javaSession;
+    private JsonObject javaSessionJson;
+    private final Object javaSessionLock = new Object();
+    private String cachedName;
+    private UUID cachedUuid;
 
     public MicrosoftAccount(final JsonObject jsonObject) {
-        this.javaSession = DEVICE_CODE_LOGIN.fromJson(jsonObject.getAsJsonObject("javaSession"));
+        // The session is parsed on first use, because parsing all sessions makes loading large account lists slow
+        this.javaSessionJson = jsonObject.getAsJsonObject("javaSession");
+        if (jsonObject.has("name") && jsonObject.has("uuid")) {
+            this.cachedName = jsonObject.get("name").getAsString();
+            this.cachedUuid = UUID.fromString(jsonObject.get("uuid").getAsString());
+        }
     }
 
     public MicrosoftAccount(final StepFullJavaSession.FullJavaSession javaSession) {
@@ -49,26 +59,42 @@ public class MicrosoftAccount extends Account {
     @Override
     public JsonObject toJson() {
         final JsonObject jsonObject = new JsonObject();
-        jsonObject.add("javaSession", DEVICE_CODE_LOGIN.toJson(this.javaSession));
+        synchronized (this.javaSessionLock) {
+            jsonObject.add("javaSession", this.javaSession != null ? DEVICE_CODE_LOGIN.toJson(this.javaSession) : this.javaSessionJson);
+        }
+        jsonObject.addProperty("name", this.getName());
+        jsonObject.addProperty("uuid", this.getUUID().toString());
         return jsonObject;
     }
 
     @Override
     public String getName() {
-        return this.javaSession.getMcProfile().getName();
+        if (this.javaSession == null && this.cachedName != null) return this.cachedName;
+        return this.getJavaSession().getMcProfile().getName();
     }
 
     @Override
     public UUID getUUID() {
-        return this.javaSession.getMcProfile().getId();
+        if (this.javaSession == null && this.cachedUuid != null) return this.cachedUuid;
+        return this.getJavaSession().getMcProfile().getId();
     }
 
     public StepMCProfile.MCProfile getMcProfile() {
-        return this.javaSession.getMcProfile();
+        return this.getJavaSession().getMcProfile();
     }
 
     public StepPlayerCertificates.PlayerCertificates getPlayerCertificates() {
-        return this.javaSession.getPlayerCertificates();
+        return this.getJavaSession().getPlayerCertificates();
+    }
+
+    private StepFullJavaSession.FullJavaSession getJavaSession() {
+        synchronized (this.javaSessionLock) {
+            if (this.javaSession == null) {
+                this.javaSession = DEVICE_CODE_LOGIN.fromJson(this.javaSessionJson);
+                this.javaSessionJson = null;
+            }
+            return this.javaSession;
+        }
     }
 
     @Override
@@ -80,7 +106,7 @@ public class MicrosoftAccount extends Account {
     public boolean refresh() throws Exception {
         if (!super.refresh()) return false;
 
-        this.javaSession = DEVICE_CODE_LOGIN.refresh(MinecraftAuth.createHttpClient(), this.javaSession);
+        this.javaSession = DEVICE_CODE_LOGIN.refresh(SharedHttpClient.get(), this.getJavaSession());
         return true;
     }
 
@@ -0,0 +1,84 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.tasks;
+
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Reloads the config whenever the config file is modified.
+ */
+public class ConfigWatcherTask implements Runnable {
+
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final File configFile;
+
+    public ConfigWatcherTask(final File configFile) {
+        this.configFile = configFile.getAbsoluteFile();
+    }
+
+    @Override
+    public void run() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            this.configFile.getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Logger.LOGGER.info("Watching " + this.configFile.getName() + " for changes");
+            // Loading the config writes it back to disk (to add missing options), so only reload if the content is different from the last load
+            byte[] lastContent = Files.readAllBytes(this.configFile.toPath());
+            while (true) {
+                final WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path path && path.toString().equals(this.configFile.getName())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (!changed) continue;
+
+                // Editors often write a file in multiple steps, so wait until the writes have settled
+                Thread.sleep(DEBOUNCE_MILLIS);
+                final WatchKey pendingKey = watchService.poll();
+                if (pendingKey != null) {
+                    pendingKey.pollEvents();
+                    pendingKey.reset();
+                }
+                try {
+                    if (Arrays.equals(lastContent, Files.readAllBytes(this.configFile.toPath()))) continue;
+                    ViaProxy.reloadConfig();
+                } catch (Throwable e) {
+                    Logger.LOGGER.error("Failed to reload the config", e);
+                }
+                try {
+                    lastContent = Files.readAllBytes(this.configFile.toPath());
+                } catch (IOException e) {
+                    lastContent = null;
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (Throwable e) {
+            Logger.LOGGER.error("Failed to watch the config file", e);
+        }
+    }
+
+}
@@ -18,7 +18,6 @@
 package net.raphimc.viaproxy.ui.impl;
 
 import net.lenni0451.commons.swing.GBC;
-import net.raphimc.minecraftauth.MinecraftAuth;
 import net.raphimc.minecraftauth.step.msa.StepMsaDeviceCode;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.saves.impl.accounts.Account;
@@ -28,6 +27,7 @@ import net.raphimc.viaproxy.ui.I18n;
 import net.raphimc.viaproxy.ui.UITab;
 import net.raphimc.viaproxy.ui.ViaProxyWindow;
 import net.raphimc.viaproxy.ui.popups.AddAccountPopup;
+import net.raphimc.viaproxy.util.SharedHttpClient;
 import net.raphimc.viaproxy.util.TFunction;
 
 import javax.swing.*;
@@ -175,7 +175,7 @@ public class AccountsTab extends UITab {
                 this.addMicrosoftAccountButton.addActionListener(event -> {
                     this.addMicrosoftAccountButton.setEnabled(false);
                     this.handleLogin(msaDeviceCodeConsumer -> {
-                        return new MicrosoftAccount(MicrosoftAccount.DEVICE_CODE_LOGIN.getFromInput(MinecraftAuth.createHttpClient(), new StepMsaDeviceCode.MsaDeviceCodeCallback(msaDeviceCodeConsumer)));
+                        return new MicrosoftAccount(MicrosoftAccount.DEVICE_CODE_LOGIN.getFromInput(SharedHttpClient.get(), new StepMsaDeviceCode.MsaDeviceCodeCallback(msaDeviceCodeConsumer)));
                     });
                 });
                 addButtons.add(this.addMicrosoftAccountButton);
@@ -185,7 +185,7 @@ public class AccountsTab extends UITab {
                 this.addBedrockAccountButton.addActionListener(event -> {
                     this.addBedrockAccountButton.setEnabled(false);
                     this.handleLogin(msaDeviceCodeConsumer -> {
-                        return new BedrockAccount(BedrockAccount.DEVICE_CODE_LOGIN.getFromInput(MinecraftAuth.createHttpClient(), new StepMsaDeviceCode.MsaDeviceCodeCallback(msaDeviceCodeConsumer)));
+                        return new BedrockAccount(BedrockAccount.DEVICE_CODE_LOGIN.getFromInput(SharedHttpClient.get(), new StepMsaDeviceCode.MsaDeviceCodeCallback(msaDeviceCodeConsumer)));
                     });
                 });
                 addButtons.add(this.addBedrockAccountButton);
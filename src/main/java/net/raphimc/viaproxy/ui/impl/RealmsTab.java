@@ -17,20 +17,17 @@
  */
 package net.raphimc.viaproxy.ui.impl;
 
-import com.google.common.collect.Iterables;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
 import com.viaversion.viaversion.api.protocol.version.VersionType;
 import net.lenni0451.commons.swing.GBC;
 import net.lenni0451.commons.swing.layouts.VerticalLayout;
-import net.raphimc.minecraftauth.MinecraftAuth;
 import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
 import net.raphimc.minecraftauth.service.realms.AbstractRealmsService;
-import net.raphimc.minecraftauth.service.realms.BedrockRealmsService;
 import net.raphimc.minecraftauth.service.realms.JavaRealmsService;
 import net.raphimc.minecraftauth.service.realms.model.RealmsWorld;
 import net.raphimc.viabedrock.api.BedrockProtocolVersion;
-import net.raphimc.viabedrock.protocol.data.ProtocolConstants;
 import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.realms.RealmsDirectory;
 import net.raphimc.viaproxy.saves.impl.accounts.Account;
 import net.raphimc.viaproxy.saves.impl.accounts.BedrockAccount;
 import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
@@ -42,8 +39,8 @@ import net.raphimc.viaproxy.util.logging.Logger;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 public class RealmsTab extends UITab {
 
@@ -103,26 +100,20 @@ public class RealmsTab extends UITab {
 
         if (this.currentAccount == null) {
             statusLabel.setText(I18n.get("tab.realms.no_account"));
+        } else if (!(this.currentAccount instanceof MicrosoftAccount) && !(this.currentAccount instanceof BedrockAccount)) {
+            statusLabel.setText(I18n.get("tab.realms.unsupported_account"));
         } else {
             statusLabel.setText(I18n.get("tab.realms.refreshing_account"));
-            CompletableFuture.runAsync(() -> {
-                try {
-                    ViaProxy.getSaveManager().accountsSave.ensureRefreshed(this.currentAccount);
-                    SwingUtilities.invokeLater(() -> {
-                        if (this.currentAccount instanceof MicrosoftAccount account) {
-                            final JavaRealmsService realmsService = new JavaRealmsService(MinecraftAuth.createHttpClient(), Iterables.getLast(this.currentSelectedJavaVersion.getIncludedVersions()), account.getMcProfile());
-                            this.loadRealms(realmsService, body, statusLabel);
-                        } else if (this.currentAccount instanceof BedrockAccount account) {
-                            final BedrockRealmsService realmsService = new BedrockRealmsService(MinecraftAuth.createHttpClient(), ProtocolConstants.BEDROCK_VERSION_NAME, account.getRealmsXsts());
-                            this.loadRealms(realmsService, body, statusLabel);
-                        } else {
-                            statusLabel.setText(I18n.get("tab.realms.unsupported_account"));
-                        }
-                    });
-                } catch (Throwable e) {
-                    Logger.LOGGER.error("Failed to refresh account", e);
-                    ViaProxyWindow.showError(I18n.get("tab.realms.error_account", e.getMessage()));
+            final Account account = this.currentAccount;
+            final ProtocolVersion javaVersion = this.currentSelectedJavaVersion;
+            RealmsDirectory.getService(account, javaVersion).whenComplete((realmsService, throwable) -> {
+                if (throwable != null) {
+                    final Throwable cause = RealmsDirectory.unwrap(throwable);
+                    Logger.LOGGER.error("Failed to refresh account", cause);
+                    ViaProxyWindow.showError(I18n.get("tab.realms.error_account", cause.getMessage()));
                     SwingUtilities.invokeLater(() -> statusLabel.setText(I18n.get("tab.realms.error_account_label")));
+                } else {
+                    SwingUtilities.invokeLater(() -> this.loadRealms(account, javaVersion, realmsService, body, statusLabel));
                 }
             });
         }
@@ -131,13 +122,13 @@ public class RealmsTab extends UITab {
         contentPane.add(body, BorderLayout.NORTH);
     }
 
-    private void loadRealms(final AbstractRealmsService realmsService, final JPanel body, final JLabel statusLabel) {
+    private void loadRealms(final Account account, final ProtocolVersion javaVersion, final AbstractRealmsService realmsService, final JPanel body, final JLabel statusLabel) {
         statusLabel.setText(I18n.get("tab.realms.availability_check"));
 
-        realmsService.isAvailable().thenAccept(state -> {
+        RealmsDirectory.isAvailable(account, javaVersion).thenAccept(state -> {
             if (state) {
                 SwingUtilities.invokeLater(() -> statusLabel.setText(I18n.get("tab.realms.loading_worlds")));
-                realmsService.getWorlds().thenAccept(worlds -> SwingUtilities.invokeLater(() -> {
+                RealmsDirectory.getWorlds(account, javaVersion).thenAccept(worlds -> SwingUtilities.invokeLater(() -> {
                     body.remove(statusLabel);
                     this.addHeader(body, realmsService instanceof JavaRealmsService);
                     final JPanel realmsPanel = new JPanel();
@@ -148,7 +139,7 @@ public class RealmsTab extends UITab {
                         label.setFont(label.getFont().deriveFont(20F));
                         realmsPanel.add(label);
                     } else {
-                        this.addRealms(realmsPanel, realmsService, worlds);
+                        this.addRealms(realmsPanel, realmsService, new ArrayList<>(worlds));
                     }
                     final JScrollPane realmsScrollPane = new JScrollPane(realmsPanel);
                     realmsScrollPane.getVerticalScrollBar().setUnitIncrement(10);
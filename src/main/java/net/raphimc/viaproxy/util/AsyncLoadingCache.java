@@ -0,0 +1,177 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache of asynchronously loaded values.<br>
+ * Concurrent requests for the same key share a single load. Values older than the refresh time are still returned, but trigger a reload in the background.
+ * Values older than the expire time are discarded and loaded again. Failed loads are not cached.<br>
+ * The cache is bounded, so keys which can be chosen by clients don't fill the memory. Expired entries are swept as part of the normal cache operations.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class AsyncLoadingCache<K, V> {
+
+    private final Function<K, CompletableFuture<V>> loader;
+    private final long refreshAfterMillis;
+    private final long expireAfterMillis;
+    private final Cache<K, Entry<V>> entries;
+
+    /**
+     * @param loader             The function which loads the value for a key
+     * @param refreshAfterMillis The age after which a value is reloaded in the background
+     * @param expireAfterMillis  The age after which a value is discarded
+     * @param maximumSize        The maximum amount of cached keys. The least recently used entries are evicted first.
+     */
+    public AsyncLoadingCache(final Function<K, CompletableFuture<V>> loader, final long refreshAfterMillis, final long expireAfterMillis, final int maximumSize) {
+        this.loader = loader;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.expireAfterMillis = expireAfterMillis;
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterMillis, TimeUnit.MILLISECONDS).build(); // Completed loads and refreshes re-put their entry, so the write time is the load time
+    }
+
+    public CompletableFuture<V> get(final K key) {
+        final long now = System.currentTimeMillis();
+        final Entry<V> entry;
+        synchronized (this) {
+            final Entry<V> existing = this.entries.getIfPresent(key);
+            if (existing != null && !existing.isExpired(now, this.expireAfterMillis)) {
+                if (existing.needsRefresh(now, this.refreshAfterMillis)) {
+                    this.refresh(key, existing);
+                }
+                return existing.future;
+            }
+
+            entry = new Entry<>();
+            this.entries.put(key, entry);
+        }
+
+        this.load(key, entry);
+        return entry.future;
+    }
+
+    /**
+     * Reloads the value in the background. Until the reload is done, {@link #get(Object)} still returns the current value.
+     * Concurrent refreshes of the same key share a single load.
+     *
+     * @param key The key
+     * @return A future which completes with the reloaded value
+     */
+    public CompletableFuture<V> refresh(final K key) {
+        synchronized (this) {
+            final Entry<V> existing = this.entries.getIfPresent(key);
+            if (existing != null && existing.loadedAt >= 0) {
+                return existing.refreshFuture != null ? existing.refreshFuture : this.refresh(key, existing);
+            }
+        }
+        return this.get(key);
+    }
+
+    public V getIfPresent(final K key) {
+        synchronized (this) {
+            final Entry<V> entry = this.entries.getIfPresent(key);
+            if (entry == null || entry.loadedAt < 0 || entry.isExpired(System.currentTimeMillis(), this.expireAfterMillis)) {
+                return null;
+            }
+            return entry.future.getNow(null);
+        }
+    }
+
+    public synchronized void invalidate(final K key) {
+        this.entries.invalidate(key);
+    }
+
+    public synchronized void invalidateAll() {
+        this.entries.invalidateAll();
+    }
+
+    private void load(final K key, final Entry<V> entry) {
+        final CompletableFuture<V> future;
+        try {
+            future = this.loader.apply(key);
+        } catch (Throwable e) {
+            this.removeEntry(key, entry);
+            entry.future.completeExceptionally(e);
+            return;
+        }
+
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                synchronized (this) {
+                    entry.loadedAt = System.currentTimeMillis();
+                    this.entries.asMap().replace(key, entry, entry);
+                }
+                entry.future.complete(value);
+            } else {
+                this.removeEntry(key, entry);
+                entry.future.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    private CompletableFuture<V> refresh(final K key, final Entry<V> entry) {
+        final CompletableFuture<V> future;
+        try {
+            future = this.loader.apply(key);
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        entry.refreshFuture = future;
+        future.whenComplete((value, throwable) -> {
+            synchronized (this) {
+                if (throwable == null) {
+                    entry.future = CompletableFuture.completedFuture(value);
+                    entry.loadedAt = System.currentTimeMillis();
+                    this.entries.asMap().replace(key, entry, entry);
+                }
+                entry.refreshFuture = null;
+            }
+        });
+        return future;
+    }
+
+    private synchronized void removeEntry(final K key, final Entry<V> entry) {
+        this.entries.asMap().remove(key, entry);
+    }
+
+    private static class Entry<V> {
+
+        private CompletableFuture<V> future = new CompletableFuture<>();
+        private long loadedAt = -1;
+        private CompletableFuture<V> refreshFuture;
+
+        private boolean isExpired(final long now, final long expireAfterMillis) {
+            return this.loadedAt >= 0 && now - this.loadedAt > expireAfterMillis;
+        }
+
+        private boolean needsRefresh(final long now, final long refreshAfterMillis) {
+            return this.refreshFuture == null && this.loadedAt >= 0 && now - this.loadedAt > refreshAfterMillis;
+        }
+
+    }
+
+}
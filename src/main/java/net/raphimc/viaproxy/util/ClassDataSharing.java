@@ -0,0 +1,238 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.util;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import com.viaversion.viaversion.api.protocol.version.VersionType;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.proxy.util.StatusPinger;
+import net.raphimc.viaproxy.saves.impl.accounts.Account;
+import net.raphimc.viaproxy.saves.impl.accounts.BedrockAccount;
+import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Support for dynamic AppCDS archives (Java 13+) which speed up the class loading during startup.<br>
+ * The "cdsdump" launch mode starts a child JVM which initializes ViaProxy, pings itself through the proxy and shuts down again. The JVM then writes the loaded classes into {@link #ARCHIVE_FILE}.<br>
+ * When the archive exists and the "useCDS" system property is set, ViaProxy relaunches itself with the archive. The launching JVM stays alive until the child exits, so this is opt-in.<br>
+ * The archive is deleted if the jar files on the class path or the Java installation changed since it was created, because the JVM would refuse to map it anyway.<br>
+ * Only classes loaded by the JVM's builtin class loaders can be archived. Classes loaded through the injection class loader or transformed by the runtime agent (the mixin targets) are loaded normally.
+ */
+public class ClassDataSharing {
+
+    public static final File ARCHIVE_FILE = new File("cache", "viaproxy.jsa");
+    public static final File STAMP_FILE = new File("cache", "viaproxy.jsa.stamp");
+    public static final String LAUNCH_MODE = "cdsdump";
+
+    private static final String CHILD_PROPERTY = "viaproxy.cds.child";
+    private static final int PING_TIMEOUT = 10_000;
+    private static final List<String> EXCLUSIVE_ARGUMENT_PREFIXES = List.of("-agentlib:jdwp", "-Xrunjdwp", "-Xdebug", "-Dcom.sun.management.jmxremote.port", "-Dcom.sun.management.jmxremote.rmi.port");
+
+    /**
+     * @return If the current JVM is a child JVM started by ViaProxy (either the training run or a relaunch with the archive)
+     */
+    public static boolean isChild() {
+        return System.getProperty(CHILD_PROPERTY) != null;
+    }
+
+    /**
+     * @return If this JVM should be relaunched with the existing archive
+     */
+    public static boolean shouldRelaunch() {
+        if (isChild() || System.getProperty("useCDS") == null || !ARCHIVE_FILE.isFile()) return false;
+        if (!isSupported()) return false;
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-XX:SharedArchiveFile") || argument.startsWith("-Xshare")) {
+                return false; // The user configured CDS manually
+            }
+            if (isExclusiveArgument(argument)) {
+                return false; // Debuggers and JMX would attach to the launching JVM or fail to bind their port in the child
+            }
+        }
+        if (!isArchiveUpToDate()) {
+            Logger.LOGGER.warn("The CDS archive is outdated and has been deleted. Run ViaProxy with the \"" + LAUNCH_MODE + "\" argument to create a new one.");
+            ARCHIVE_FILE.delete();
+            STAMP_FILE.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Relaunches ViaProxy in a child JVM which uses the archive.
+     *
+     * @param args The program arguments
+     * @return The exit code of the child JVM
+     */
+    public static int relaunch(final String[] args) throws Exception {
+        return runChild("-XX:SharedArchiveFile=" + ARCHIVE_FILE.getAbsolutePath(), args);
+    }
+
+    /**
+     * Starts the training run in a child JVM which writes the archive when it exits.
+     *
+     * @return The exit code of the child JVM
+     */
+    public static int dumpArchive() throws Exception {
+        if (!isSupported()) {
+            Logger.LOGGER.error("Creating a CDS archive requires Java 13 or newer and ViaProxy has to be started from a jar file");
+            return 1;
+        }
+        ARCHIVE_FILE.getParentFile().mkdirs();
+        ARCHIVE_FILE.delete();
+        STAMP_FILE.delete();
+
+        final long start = System.currentTimeMillis();
+        final int exitCode = runChild("-XX:ArchiveClassesAtExit=" + ARCHIVE_FILE.getAbsolutePath(), new String[]{LAUNCH_MODE});
+        if (exitCode == 0 && ARCHIVE_FILE.isFile()) {
+            Files.writeString(STAMP_FILE.toPath(), getStamp());
+            Logger.LOGGER.info("Created CDS archive " + ARCHIVE_FILE.getPath() + " (" + ARCHIVE_FILE.length() / 1024 + "KB) in " + (System.currentTimeMillis() - start) + "ms. Start ViaProxy with -DuseCDS to use it.");
+        } else {
+            Logger.LOGGER.error("Failed to create the CDS archive (exit code " + exitCode + ")");
+        }
+        return exitCode;
+    }
+
+    /**
+     * The workload of the training run. Starts the proxy on a random loopback port and pings it once.<br>
+     * The config has to be loaded already and should not be the user's config file.
+     */
+    public static void runTrainingWorkload() {
+        parseStoredSessions();
+        ViaProxy.getConfig().setBindAddress(new InetSocketAddress("127.0.0.1", 0));
+        ViaProxy.startProxy();
+        final SocketAddress proxyAddress = ViaProxy.getCurrentProxyServer().getChannel().localAddress();
+
+        final long start = System.currentTimeMillis();
+        try {
+            StatusPinger.ping(proxyAddress, getLatestReleaseVersion().getOriginalVersion(), PING_TIMEOUT).get(PING_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Throwable e) {
+            Logger.LOGGER.warn("Self status ping failed during the CDS training run: " + e.getMessage());
+        }
+        Logger.LOGGER.info("Self status ping took " + (System.currentTimeMillis() - start) + "ms");
+        ViaProxy.stopProxy();
+    }
+
+    /**
+     * The account sessions are only parsed on first use. Parsing one of each type loads the classes which the first login with such an account needs, so they are archived as well.
+     */
+    private static void parseStoredSessions() {
+        boolean microsoft = false;
+        boolean bedrock = false;
+        for (Account account : ViaProxy.getSaveManager().accountsSave.getAccounts()) {
+            try {
+                if (!microsoft && account instanceof MicrosoftAccount microsoftAccount) {
+                    microsoftAccount.getMcProfile();
+                    microsoft = true;
+                } else if (!bedrock && account instanceof BedrockAccount bedrockAccount) {
+                    bedrockAccount.getMcChain();
+                    bedrock = true;
+                }
+            } catch (Throwable e) {
+                Logger.LOGGER.warn("Failed to parse the session of " + account.getDisplayString() + " during the CDS training run: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int runChild(final String cdsArgument, final String[] args) throws Exception {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getAbsolutePath());
+        command.add(cdsArgument);
+        command.add("-Xshare:auto");
+        command.add("-D" + CHILD_PROPERTY + "=true");
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!isExclusiveArgument(argument)) {
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ViaProxy.class.getName());
+        command.addAll(List.of(args));
+
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        final Thread destroyHook = new Thread(process::destroy, "CDS-Child-Destroyer");
+        Runtime.getRuntime().addShutdownHook(destroyHook);
+        final int exitCode = process.waitFor();
+        Runtime.getRuntime().removeShutdownHook(destroyHook);
+        return exitCode;
+    }
+
+    private static boolean isSupported() {
+        final String specificationVersion = System.getProperty("java.specification.version");
+        if (specificationVersion.startsWith("1.") || Integer.parseInt(specificationVersion) < 13) return false;
+
+        // CDS only supports jar files on the class path
+        final String classPath = System.getProperty("java.class.path");
+        if (classPath == null || classPath.isEmpty()) return false;
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.toLowerCase().endsWith(".jar") || !new File(entry).isFile()) return false;
+        }
+        return true;
+    }
+
+    private static boolean isExclusiveArgument(final String argument) {
+        for (String prefix : EXCLUSIVE_ARGUMENT_PREFIXES) {
+            if (argument.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isArchiveUpToDate() {
+        try {
+            return STAMP_FILE.isFile() && Files.readString(STAMP_FILE.toPath()).equals(getStamp());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return A string identifying the Java installation and the jar files on the class path (Path, size and modification time)
+     */
+    private static String getStamp() {
+        final StringBuilder stamp = new StringBuilder();
+        stamp.append(System.getProperty("java.home")).append('|').append(System.getProperty("java.vm.version")).append('\n');
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            final File file = new File(entry).getAbsoluteFile();
+            stamp.append(file.getPath()).append('|').append(file.length()).append('|').append(file.lastModified()).append('\n');
+        }
+        return stamp.toString();
+    }
+
+    private static ProtocolVersion getLatestReleaseVersion() {
+        final List<ProtocolVersion> supportedVersions = ProtocolVersion.getProtocols();
+        for (int i = supportedVersions.size() - 1; i >= 0; i--) {
+            final ProtocolVersion version = supportedVersions.get(i);
+            if (version.getVersionType() == VersionType.RELEASE && !version.isSnapshot()) {
+                return version;
+            }
+        }
+        throw new IllegalStateException("No release version available");
+    }
+
+}
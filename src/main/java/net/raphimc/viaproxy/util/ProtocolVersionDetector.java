@@ -17,51 +17,74 @@
  */
 package net.raphimc.viaproxy.util;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
-import net.lenni0451.mcping.MCPing;
-import net.lenni0451.mcping.pings.sockets.impl.factories.SocketChannelSocketFactory;
-import net.lenni0451.mcping.responses.MCPingResponse;
 import net.raphimc.vialoader.util.ProtocolVersionList;
+import net.raphimc.viaproxy.proxy.util.StatusPinger;
 
 import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class ProtocolVersionDetector {
 
     private static final int TIMEOUT = 3000;
+    private static final long CACHE_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long CACHE_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int CACHE_SIZE = 1024; // The server addresses can be chosen by clients (Wildcard domains)
 
-    public static ProtocolVersion get(final SocketAddress serverAddress, final ProtocolVersion clientVersion) {
-        MCPingResponse response = MCPing
-                .pingModern(clientVersion.getOriginalVersion())
-                .tcpSocketFactory(new SocketChannelSocketFactory())
-                .address(AddressUtil.toJ16UnixSocketAddress(serverAddress))
-                .noResolve()
-                .timeout(TIMEOUT, TIMEOUT)
-                .getSync();
+    private static final AsyncLoadingCache<DetectionKey, ProtocolVersion> CACHE = new AsyncLoadingCache<>(key -> detect(key.serverAddress(), key.clientVersion()), CACHE_REFRESH_MILLIS, CACHE_EXPIRE_MILLIS, CACHE_SIZE);
 
-        if (response.version.protocol == clientVersion.getOriginalVersion()) { // If the server is on the same version as the client, we can just connect
-            return clientVersion;
-        } else { // Else ping again with protocol id -1 to get the protocol id of the server
-            response = MCPing
-                    .pingModern(-1)
-                    .tcpSocketFactory(new SocketChannelSocketFactory())
-                    .address(AddressUtil.toJ16UnixSocketAddress(serverAddress))
-                    .noResolve()
-                    .timeout(TIMEOUT, TIMEOUT)
-                    .getSync();
+    /**
+     * Gets the protocol version of the server. Detected versions are cached per server address and refreshed in the background.
+     *
+     * @param serverAddress The address of the server
+     * @param clientVersion The version of the connecting client
+     * @return A future which completes with the detected server version
+     */
+    public static CompletableFuture<ProtocolVersion> get(final SocketAddress serverAddress, final ProtocolVersion clientVersion) {
+        return CACHE.get(new DetectionKey(serverAddress, clientVersion));
+    }
+
+    private static CompletableFuture<ProtocolVersion> detect(final SocketAddress serverAddress, final ProtocolVersion clientVersion) {
+        return StatusPinger.ping(serverAddress, clientVersion.getOriginalVersion(), TIMEOUT).thenCompose(statusJson -> {
+            if (getVersionObject(statusJson).get("protocol").getAsInt() == clientVersion.getOriginalVersion()) { // If the server is on the same version as the client, we can just connect
+                return CompletableFuture.completedFuture(clientVersion);
+            } else { // Else ping again with protocol id -1 to get the protocol id of the server
+                return StatusPinger.ping(serverAddress, -1, TIMEOUT).thenApply(ProtocolVersionDetector::fromStatus);
+            }
+        });
+    }
+
+    private static ProtocolVersion fromStatus(final String statusJson) {
+        final JsonObject version = getVersionObject(statusJson);
+        final int protocol = version.get("protocol").getAsInt();
+        final String name = version.has("name") ? version.get("name").getAsString() : "";
 
-            if (ProtocolVersion.isRegistered(response.version.protocol)) { // If the protocol is registered, we can use it
-                return ProtocolVersion.getProtocol(response.version.protocol);
-            } else {
-                for (ProtocolVersion protocolVersion : ProtocolVersionList.getProtocolsNewToOld()) {
-                    for (String version : protocolVersion.getIncludedVersions()) {
-                        if (response.version.name.contains(version)) {
-                            return protocolVersion;
-                        }
+        if (ProtocolVersion.isRegistered(protocol)) { // If the protocol is registered, we can use it
+            return ProtocolVersion.getProtocol(protocol);
+        } else {
+            for (ProtocolVersion protocolVersion : ProtocolVersionList.getProtocolsNewToOld()) {
+                for (String includedVersion : protocolVersion.getIncludedVersions()) {
+                    if (name.contains(includedVersion)) {
+                        return protocolVersion;
                     }
                 }
-                throw new RuntimeException("Unable to detect the server version\nServer sent an invalid protocol id: " + response.version.protocol + " (" + response.version.name + "§r)");
             }
+            throw new RuntimeException("Unable to detect the server version\nServer sent an invalid protocol id: " + protocol + " (" + name + "§r)");
         }
     }
 
+    private static JsonObject getVersionObject(final String statusJson) {
+        final JsonObject status = JsonParser.parseString(statusJson).getAsJsonObject();
+        if (!status.has("version")) {
+            throw new RuntimeException("Unable to detect the server version\nServer did not send a version");
+        }
+        return status.getAsJsonObject("version");
+    }
+
+    private record DetectionKey(SocketAddress serverAddress, ProtocolVersion clientVersion) {
+    }
+
 }
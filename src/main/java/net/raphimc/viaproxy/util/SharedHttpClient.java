@@ -0,0 +1,96 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.util;
+
+import net.lenni0451.commons.httpclient.HttpClient;
+import net.lenni0451.commons.httpclient.HttpResponse;
+import net.lenni0451.commons.httpclient.RetryHandler;
+import net.lenni0451.commons.httpclient.constants.ContentTypes;
+import net.lenni0451.commons.httpclient.constants.Headers;
+import net.lenni0451.commons.httpclient.requests.HttpRequest;
+import net.raphimc.minecraftauth.MinecraftAuth;
+import net.raphimc.viaproxy.ViaProxy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP client shared by all requests to the Microsoft, Mojang and Realms APIs.<br>
+ * Using a single client allows the JDK to keep the TLS connections alive and reuse them, instead of doing a new handshake for every refresh or Realms call.
+ * The number of concurrent requests is limited and per-host request counts and latencies are recorded in the {@link Metrics}.
+ */
+public class SharedHttpClient extends HttpClient {
+
+    private static HttpClient instance;
+
+    private final Semaphore permits;
+
+    private SharedHttpClient(final int maxConcurrentRequests) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    public static synchronized HttpClient get() {
+        if (instance == null) {
+            final int maxConcurrentRequests = ViaProxy.getConfig() != null ? Math.max(1, ViaProxy.getConfig().getHttpMaxConcurrentRequests()) : 8;
+            if (System.getProperty("http.maxConnections") == null) {
+                System.setProperty("http.maxConnections", String.valueOf(maxConcurrentRequests)); // Idle connections kept alive per host
+            }
+
+            // Same defaults as MinecraftAuth.createHttpClient()
+            instance = new SharedHttpClient(maxConcurrentRequests)
+                    .setConnectTimeout(5_000)
+                    .setReadTimeout(10_000)
+                    .setCookieManager(null)
+                    .setFollowRedirects(false)
+                    .setRetryHandler(new RetryHandler(0, 50))
+                    .setHeader(Headers.ACCEPT, ContentTypes.APPLICATION_JSON.toString())
+                    .setHeader(Headers.ACCEPT_LANGUAGE, "en-US,en")
+                    .setHeader(Headers.USER_AGENT, MinecraftAuth.USER_AGENT);
+        }
+        return instance;
+    }
+
+    @Override
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+        final String metricsPrefix = "http." + request.getURL().getHost();
+        if (!this.permits.tryAcquire()) {
+            Metrics.increment("http.queued");
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a free HTTP request slot");
+            }
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final HttpResponse response = super.execute(request);
+            Metrics.increment(metricsPrefix + ".requests");
+            return response;
+        } catch (Throwable e) {
+            Metrics.increment(metricsPrefix + ".failed");
+            throw e;
+        } finally {
+            Metrics.add(metricsPrefix + ".time_ms", (System.nanoTime() - start) / 1_000_000);
+            this.permits.release();
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.util;
+
+import net.raphimc.viaproxy.util.logging.Logger;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+
+/**
+ * Measures how long the startup phases take. Phases can run on multiple threads and are logged in the order they were started.
+ */
+public class StartupTimer {
+
+    private final long start = System.currentTimeMillis();
+    private final Map<String, Long> phaseTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public <T> T time(final String phase, final Supplier<T> action) {
+        final long phaseStart = System.currentTimeMillis();
+        this.phaseTimes.put(phase, -1L); // Reserve the position of the phase
+        try {
+            return action.get();
+        } finally {
+            this.phaseTimes.put(phase, System.currentTimeMillis() - phaseStart);
+        }
+    }
+
+    public void time(final String phase, final Runnable action) {
+        this.time(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void log() {
+        final StringJoiner joiner = new StringJoiner(", ");
+        synchronized (this.phaseTimes) {
+            for (Map.Entry<String, Long> entry : this.phaseTimes.entrySet()) {
+                joiner.add(entry.getKey() + ": " + (entry.getValue() >= 0 ? entry.getValue() + "ms" : "running"));
+            }
+        }
+        Logger.LOGGER.info("Initialized in " + (System.currentTimeMillis() - this.start) + "ms (" + joiner + ")");
+    }
+
+}
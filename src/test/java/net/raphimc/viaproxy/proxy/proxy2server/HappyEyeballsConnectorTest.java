@@ -0,0 +1,115 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.proxy.proxy2server;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import net.raphimc.viaproxy.util.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HappyEyeballsConnectorTest {
+
+    private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+
+    @AfterEach
+    void shutdown() {
+        this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void ordersIpv6FirstAndInterleavesTheFamilies() throws IOException {
+        final InetAddress ipv4a = InetAddress.getByName("192.0.2.1");
+        final InetAddress ipv4b = InetAddress.getByName("192.0.2.2");
+        final InetAddress ipv6a = InetAddress.getByName("2001:db8::1");
+        final InetAddress ipv6b = InetAddress.getByName("2001:db8::2");
+
+        final List<InetSocketAddress> ordered = HappyEyeballsConnector.order(new InetAddress[]{ipv4a, ipv4b, ipv6a, ipv6b}, 25565);
+
+        assertEquals(List.of(
+                new InetSocketAddress(ipv6a, 25565),
+                new InetSocketAddress(ipv4a, 25565),
+                new InetSocketAddress(ipv6b, 25565),
+                new InetSocketAddress(ipv4b, 25565)
+        ), ordered);
+    }
+
+    @Test
+    void doesNotRaceASingleAddress() throws IOException {
+        assertNull(HappyEyeballsConnector.order(new InetAddress[]{InetAddress.getByName("192.0.2.1")}, 25565));
+    }
+
+    @Test
+    void fallsBackToTheNextAddressOnTheGivenEventLoop() throws Exception {
+        try (ServerSocket refusing = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()); ServerSocket accepting = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final InetSocketAddress refusedAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), refusing.getLocalPort());
+            refusing.close(); // Nothing listens on this port anymore
+            final InetSocketAddress acceptedAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), accepting.getLocalPort());
+            final EventLoop eventLoop = this.group.next();
+            final long fallbacks = Metrics.get("happy_eyeballs.fallback");
+
+            final CompletableFuture<Channel> race = eventLoop.submit(() -> HappyEyeballsConnector.connect(List.of(refusedAddress, acceptedAddress), address -> new Bootstrap()
+                    .group(eventLoop)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1_000)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(address), eventLoop)).get();
+            final Channel channel = race.get(5, TimeUnit.SECONDS);
+
+            assertEquals(acceptedAddress, channel.remoteAddress());
+            assertSame(eventLoop, channel.eventLoop());
+            assertEquals(fallbacks + 1, Metrics.get("happy_eyeballs.fallback"));
+            channel.close();
+        }
+    }
+
+    @Test
+    void failsWhenNoAddressIsReachable() throws Exception {
+        final InetSocketAddress refusedAddress;
+        try (ServerSocket refusing = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            refusedAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), refusing.getLocalPort());
+        }
+        final EventLoop eventLoop = this.group.next();
+
+        final CompletableFuture<Channel> race = eventLoop.submit(() -> HappyEyeballsConnector.connect(List.of(refusedAddress, refusedAddress), address -> new Bootstrap()
+                .group(eventLoop)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(address), eventLoop)).get();
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> race.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+}
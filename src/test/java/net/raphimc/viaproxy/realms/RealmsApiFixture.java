@@ -0,0 +1,402 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.lenni0451.commons.httpclient.HttpClient;
+import net.lenni0451.commons.httpclient.HttpResponse;
+import net.lenni0451.commons.httpclient.executor.ExecutorType;
+import net.lenni0451.commons.httpclient.executor.RequestExecutor;
+import net.lenni0451.commons.httpclient.requests.HttpContentRequest;
+import net.lenni0451.commons.httpclient.requests.HttpRequest;
+import net.lenni0451.reflect.stream.RStream;
+import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
+import net.raphimc.minecraftauth.step.java.StepMCProfile;
+import net.raphimc.minecraftauth.step.java.StepMCToken;
+import net.raphimc.viaproxy.ViaProxy;
+import net.raphimc.viaproxy.saves.SaveManager;
+import net.raphimc.viaproxy.saves.impl.AccountsSaveV3;
+import net.raphimc.viaproxy.saves.impl.accounts.MicrosoftAccount;
+import net.raphimc.viaproxy.util.SharedHttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.CookieManager;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stand-in for the Java Edition Realms API and the Minecraft profile endpoint, which serves the availability check, the world list, the join endpoint and the profile lookup of account refreshes on a local port.<br>
+ * {@link #install()} routes the {@link SharedHttpClient} to it, so the real {@link RealmsDirectory} and {@link RealmsResolver} code (Including MinecraftAuth's request and response handling) runs against it.
+ * The latency, server errors, stalled requests, realms which are still booting and accounts which have not accepted the terms of service can be configured.
+ */
+class RealmsApiFixture implements AutoCloseable {
+
+    private static final Set<String> HOSTS = Set.of("pc.realms.minecraft.net", "api.minecraftservices.com");
+    private static final Pattern JOIN_PATH = Pattern.compile("/worlds/v1/(\\d+)/join/pc");
+    private static final String ACCESS_TOKEN = "fixture-access-token";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "RealmsApiFixture");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<World> worlds = new CopyOnWriteArrayList<>(); // The Realms API lists the realms in a stable order
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final AtomicInteger failingRequests = new AtomicInteger();
+    private final AtomicInteger stalledRequests = new AtomicInteger();
+    private final AtomicInteger bootingJoins = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile long stallMillis;
+    private volatile boolean tosAccepted = true;
+    private volatile UUID profileUuid = UUID.randomUUID();
+    private volatile String profileName = "Player";
+
+    public RealmsApiFixture() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Routes all requests of the {@link SharedHttpClient} to this fixture and makes the Realms code usable without a started proxy.
+     */
+    public void install() {
+        SharedHttpClient.get().setExecutor(client -> new RedirectingExecutor(client, ExecutorType.AUTO.makeExecutor(client)));
+        if (ViaProxy.getSaveManager() == null) { // The real save manager would load and write the saves.json in the working directory
+            final SaveManager saveManager = mock(SaveManager.class);
+            RStream.of(SaveManager.class, saveManager).fields().by("accountsSave").set(new AccountsSaveV3());
+            RStream.of(ViaProxy.class).fields().by("SAVE_MANAGER").set(saveManager);
+        }
+    }
+
+    /**
+     * @param name The name of the account
+     * @return A Microsoft account whose tokens are accepted by this fixture
+     */
+    public static FixtureAccount createAccount(final String name) {
+        return new FixtureAccount(name);
+    }
+
+    public RealmsApiFixture addWorld(final long id, final String ownerName, final String name, final String address) {
+        this.worlds.add(new World(id, ownerName, name, address));
+        return this;
+    }
+
+    /**
+     * @param latencyMillis The time each request takes before it is answered
+     */
+    public RealmsApiFixture setLatency(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param count The number of following requests which fail with an internal server error
+     */
+    public RealmsApiFixture failNextRequests(final int count) {
+        this.failingRequests.set(count);
+        return this;
+    }
+
+    /**
+     * @param count       The number of following requests which are answered late
+     * @param stallMillis The time the stalled requests take before they are answered
+     */
+    public RealmsApiFixture stallNextRequests(final int count, final long stallMillis) {
+        this.stallMillis = stallMillis;
+        this.stalledRequests.set(count);
+        return this;
+    }
+
+    /**
+     * @param count The number of following join requests which are answered with "Retry again later", like the Realms API does while a realm is booting
+     */
+    public RealmsApiFixture bootNextJoins(final int count) {
+        this.bootingJoins.set(count);
+        return this;
+    }
+
+    /**
+     * @param name The name the profile endpoint returns
+     */
+    public RealmsApiFixture setProfile(final String name) {
+        this.profileUuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        this.profileName = name;
+        return this;
+    }
+
+    public RealmsApiFixture setTosAccepted(final boolean tosAccepted) {
+        this.tosAccepted = tosAccepted;
+        return this;
+    }
+
+    /**
+     * @param endpoint One of {@code compatible}, {@code worlds}, {@code join} or {@code profile}
+     * @return The number of requests to the endpoint, including failed ones
+     */
+    public int getRequests(final String endpoint) {
+        final AtomicInteger count = this.requests.get(endpoint);
+        return count != null ? count.get() : 0;
+    }
+
+    public int getMaxActiveRequests() {
+        return this.maxActiveRequests.get();
+    }
+
+    public void reset() {
+        this.requests.clear();
+        this.maxActiveRequests.set(0);
+        this.failingRequests.set(0);
+        this.stalledRequests.set(0);
+        this.bootingJoins.set(0);
+        this.latencyMillis = 0;
+        this.tosAccepted = true;
+    }
+
+    @Override
+    public void close() {
+        SharedHttpClient.get().setExecutor(ExecutorType.AUTO::makeExecutor);
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        this.maxActiveRequests.accumulateAndGet(this.activeRequests.incrementAndGet(), Math::max);
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            final Matcher joinMatcher = JOIN_PATH.matcher(path);
+            final String endpoint = switch (path) {
+                case "/mco/client/compatible" -> "compatible";
+                case "/worlds" -> "worlds";
+                case "/minecraft/profile" -> "profile";
+                default -> joinMatcher.matches() ? "join" : null;
+            };
+            if (endpoint == null) {
+                this.respond(exchange, 404, "text/plain", "Not Found");
+                return;
+            }
+            this.requests.computeIfAbsent(endpoint, k -> new AtomicInteger()).incrementAndGet();
+
+            // The outcome is decided when the request arrives, so stalled requests of a previous test don't use up the failures of the next one
+            final boolean fail = this.failingRequests.getAndUpdate(i -> Math.max(0, i - 1)) > 0;
+            final boolean booting = endpoint.equals("join") && this.bootingJoins.getAndUpdate(i -> Math.max(0, i - 1)) > 0;
+            final boolean tosAccepted = this.tosAccepted;
+            Thread.sleep(this.stalledRequests.getAndUpdate(i -> Math.max(0, i - 1)) > 0 ? this.stallMillis : this.latencyMillis);
+
+            if (!this.isAuthorized(exchange, endpoint)) {
+                this.respond(exchange, 401, "text/plain", "Unauthorized");
+            } else if (fail) {
+                this.respond(exchange, 500, "text/plain", "Internal Server Error");
+            } else if (endpoint.equals("profile")) {
+                final JsonObject skin = new JsonObject();
+                skin.addProperty("url", "http://textures.minecraft.net/texture/fixture");
+                final JsonArray skins = new JsonArray();
+                skins.add(skin);
+                final JsonObject response = new JsonObject();
+                response.addProperty("id", this.profileUuid.toString().replace("-", ""));
+                response.addProperty("name", this.profileName);
+                response.add("skins", skins);
+                this.respond(exchange, 200, "application/json", response.toString());
+            } else if (endpoint.equals("compatible")) {
+                this.respond(exchange, 200, "text/plain", "COMPATIBLE");
+            } else if (!tosAccepted) {
+                final JsonObject error = new JsonObject();
+                error.addProperty("errorCode", RealmsRequestException.TOS_NOT_ACCEPTED);
+                error.addProperty("errorMsg", "Terms of service not accepted");
+                this.respond(exchange, 403, "application/json", error.toString());
+            } else if (endpoint.equals("worlds")) {
+                final JsonArray servers = new JsonArray();
+                for (World world : this.worlds) {
+                    servers.add(world.toJson());
+                }
+                final JsonObject response = new JsonObject();
+                response.add("servers", servers);
+                this.respond(exchange, 200, "application/json", response.toString());
+            } else {
+                final long id = Long.parseLong(joinMatcher.group(1));
+                final World world = this.worlds.stream().filter(w -> w.id == id).findFirst().orElse(null);
+                if (world == null) {
+                    this.respond(exchange, 404, "text/plain", "Not Found");
+                } else if (booting) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    this.respond(exchange, 503, "text/plain", "Retry again later");
+                } else {
+                    final JsonObject response = new JsonObject();
+                    response.addProperty("address", world.address);
+                    response.addProperty("pendingUpdate", false);
+                    this.respond(exchange, 200, "application/json", response.toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } finally {
+            this.activeRequests.decrementAndGet();
+        }
+    }
+
+    private boolean isAuthorized(final HttpExchange exchange, final String endpoint) {
+        if (endpoint.equals("profile")) {
+            return ("Bearer " + ACCESS_TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization"));
+        } else {
+            final String cookies = exchange.getRequestHeaders().getFirst("Cookie");
+            return cookies != null && cookies.replace("\"", "").contains("sid=token:" + ACCESS_TOKEN + ":"); // The cookie manager sends quoted version 1 cookies
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int statusCode, final String contentType, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private record World(long id, String ownerName, String name, String address) {
+
+        private JsonObject toJson() {
+            final JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("id", this.id);
+            jsonObject.addProperty("owner", this.ownerName);
+            jsonObject.addProperty("ownerUUID", UUID.nameUUIDFromBytes(this.ownerName.getBytes(StandardCharsets.UTF_8)).toString());
+            jsonObject.addProperty("name", this.name);
+            jsonObject.addProperty("motd", "");
+            jsonObject.addProperty("state", "OPEN");
+            jsonObject.addProperty("expired", false);
+            jsonObject.addProperty("worldType", "NORMAL");
+            jsonObject.addProperty("maxPlayers", 10);
+            jsonObject.addProperty("compatibility", "COMPATIBLE");
+            jsonObject.addProperty("activeVersion", "1.20.6");
+            return jsonObject;
+        }
+
+    }
+
+    /**
+     * Account whose Minecraft token is accepted by the fixture. Refreshing it only looks up the profile, and only once its token has been marked as expired.
+     */
+    static class FixtureAccount extends MicrosoftAccount {
+
+        private static final StepMCProfile PROFILE_STEP = new StepMCProfile(null);
+
+        private final StepMCToken.MCToken mcToken = new StepMCToken.MCToken(ACCESS_TOKEN, "Bearer", Long.MAX_VALUE, null);
+        private volatile StepMCProfile.MCProfile mcProfile;
+        private volatile boolean expired;
+
+        private FixtureAccount(final String name) {
+            super(toJson(name));
+            this.mcProfile = new StepMCProfile.MCProfile(this.getUUID(), name, null, this.mcToken);
+        }
+
+        private static JsonObject toJson(final String name) {
+            final JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("name", name);
+            jsonObject.addProperty("uuid", UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString());
+            return jsonObject;
+        }
+
+        public void expire() {
+            this.expired = true;
+        }
+
+        @Override
+        public StepMCProfile.MCProfile getMcProfile() {
+            return this.mcProfile;
+        }
+
+        @Override
+        public boolean refresh() throws Exception {
+            if (!this.expired) return false;
+
+            this.mcProfile = PROFILE_STEP.applyStep(SharedHttpClient.get(), this.mcToken);
+            this.expired = false;
+            return true;
+        }
+
+    }
+
+    /**
+     * Sends the requests to the Realms API and the profile endpoint to the fixture instead. The cookies of the Realms service are sent along, because the cookie manager only hands them out for the real host.
+     */
+    private class RedirectingExecutor extends RequestExecutor {
+
+        private final RequestExecutor delegate;
+
+        private RedirectingExecutor(final HttpClient client, final RequestExecutor delegate) {
+            super(client);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpResponse execute(final HttpRequest request) throws IOException, InterruptedException {
+            if (!HOSTS.contains(request.getURL().getHost())) {
+                throw new IOException("Unexpected request to " + request.getURL() + " (Only the Realms API and the profile endpoint are served by the fixture)");
+            } else if (request instanceof HttpContentRequest) {
+                throw new UnsupportedOperationException("Requests with content are not supported by the fixture");
+            }
+
+            final URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), request.getURL().getFile());
+            final HttpRequest redirected = new HttpRequest(request.getMethod(), url);
+            for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+                for (String value : header.getValue()) {
+                    redirected.appendHeader(header.getKey(), value);
+                }
+            }
+            final CookieManager cookieManager = this.getCookieManager(request);
+            if (cookieManager != null) {
+                try {
+                    final List<String> cookies = cookieManager.get(request.getURL().toURI(), Map.of()).get("Cookie");
+                    if (cookies != null && !cookies.isEmpty()) {
+                        redirected.setHeader("Cookie", String.join("; ", cookies));
+                    }
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+            }
+            redirected.setCookieManager(null);
+            if (request.isRetryHandlerSet()) {
+                redirected.setRetryHandler(request.getRetryHandler());
+            }
+            return this.delegate.execute(redirected);
+        }
+
+    }
+
+}
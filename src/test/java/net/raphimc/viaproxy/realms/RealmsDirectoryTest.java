@@ -0,0 +1,138 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
+import net.raphimc.minecraftauth.service.realms.model.RealmsWorld;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RealmsDirectoryTest {
+
+    private static final ProtocolVersion VERSION = ProtocolVersion.v1_20_5;
+    private static final long STALL_MILLIS = 12_000; // Longer than the call timeout
+    private static RealmsApiFixture fixture;
+    private static RealmsApiFixture.FixtureAccount account;
+
+    @BeforeAll
+    static void startFixture() throws Exception {
+        fixture = new RealmsApiFixture().addWorld(12345, "Notch", "My Survival World!", "127.0.0.1:25001");
+        fixture.install();
+        account = RealmsApiFixture.createAccount("Player");
+    }
+
+    @AfterAll
+    static void stopFixture() {
+        fixture.close();
+    }
+
+    @BeforeEach
+    void resetFixture() {
+        fixture.reset();
+        RealmsDirectory.invalidateAll();
+    }
+
+    private static List<RealmsWorld> getWorlds() throws Exception {
+        return RealmsDirectory.getWorlds(account, VERSION).get(60, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void loadsTheAvailabilityAndTheWorldList() throws Exception {
+        assertTrue(RealmsDirectory.isAvailable(account, VERSION).get(60, TimeUnit.SECONDS));
+        final List<RealmsWorld> worlds = getWorlds();
+
+        assertEquals(1, worlds.size());
+        assertEquals(12345, worlds.get(0).getId());
+        assertEquals("Notch", worlds.get(0).getOwnerName());
+        assertSame(worlds, getWorlds());
+        assertEquals(1, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void refreshesAnExpiredAccountFirst() throws Exception {
+        account.expire();
+        fixture.setProfile("Renamed");
+
+        assertEquals(1, getWorlds().size());
+        assertEquals(1, fixture.getRequests("profile"));
+        assertEquals("Renamed", account.getMcProfile().getName());
+        assertEquals(1, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void retriesFailedAccountRefreshes() throws Exception {
+        account.expire();
+        fixture.failNextRequests(1);
+
+        assertEquals(1, getWorlds().size());
+        assertEquals(2, fixture.getRequests("profile"));
+    }
+
+    @Test
+    void retriesFailedCalls() throws Exception {
+        fixture.failNextRequests(2);
+
+        assertEquals(1, getWorlds().size());
+        assertEquals(3, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void failsAfterTheLastAttempt() {
+        fixture.failNextRequests(3);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, RealmsDirectoryTest::getWorlds);
+        assertInstanceOf(IOException.class, RealmsDirectory.unwrap(exception.getCause()));
+        assertEquals(3, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void retriesCallsWhichTimeOut() throws Exception {
+        fixture.stallNextRequests(1, STALL_MILLIS);
+
+        assertEquals(1, getWorlds().size());
+        assertEquals(2, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void failsWithTheTimeoutIfAllAttemptsTimeOut() {
+        fixture.stallNextRequests(3, STALL_MILLIS);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, RealmsDirectoryTest::getWorlds);
+        assertInstanceOf(TimeoutException.class, RealmsDirectory.unwrap(exception.getCause()));
+        assertEquals(3, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void doesNotRetryRealmsRequestExceptions() {
+        fixture.setTosAccepted(false);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, RealmsDirectoryTest::getWorlds);
+        final RealmsRequestException cause = assertInstanceOf(RealmsRequestException.class, RealmsDirectory.unwrap(exception.getCause()));
+        assertEquals(RealmsRequestException.TOS_NOT_ACCEPTED, cause.getErrorCode());
+        assertEquals(1, fixture.getRequests("worlds"));
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.realms;
+
+import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
+import net.raphimc.minecraftauth.responsehandler.exception.RealmsRequestException;
+import net.raphimc.viaproxy.util.AddressUtil;
+import org.junit.jupiter.api.*;
+
+import java.net.SocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RealmsResolverTest {
+
+    private static final ProtocolVersion VERSION = ProtocolVersion.v1_20_5;
+    private static RealmsApiFixture fixture;
+    private static RealmsApiFixture.FixtureAccount account;
+
+    @BeforeAll
+    static void startFixture() throws Exception {
+        fixture = new RealmsApiFixture()
+                .addWorld(12345, "Notch", "My Survival World!", "127.0.0.1:25001")
+                .addWorld(2, "Notch", "Second", "127.0.0.1:25002")
+                .addWorld(3, "jeb_", "Notch", "127.0.0.1:25003")
+                .addWorld(4, "Dinnerbone", "12345", "127.0.0.1:25004");
+        fixture.install();
+        account = RealmsApiFixture.createAccount("Player");
+    }
+
+    @AfterAll
+    static void stopFixture() {
+        fixture.close();
+    }
+
+    @BeforeEach
+    void resetFixture() {
+        fixture.reset();
+        RealmsDirectory.invalidateAll();
+    }
+
+    @AfterEach
+    void stopResolver() {
+        RealmsResolver.stop();
+    }
+
+    /**
+     * Starts the resolver after the fixture has been configured, because starting it immediately loads the world list in the background.
+     */
+    private static void startResolver() {
+        RealmsResolver.start(account, VERSION, "Notch");
+    }
+
+    private static String resolve(final String selector) throws Exception {
+        return AddressUtil.toString(RealmsResolver.resolve(selector).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void resolvesTheDefaultRealmOnce() throws Exception {
+        startResolver();
+        final SocketAddress address = RealmsResolver.getAddress().get(30, TimeUnit.SECONDS);
+
+        assertEquals("127.0.0.1:25001", AddressUtil.toString(address));
+        assertSame(address, RealmsResolver.getAddress().get(30, TimeUnit.SECONDS));
+        assertEquals(1, fixture.getRequests("join")); // Joining boots the realm, so the address is cached
+    }
+
+    @Test
+    void findsRealmsByIdOwnerNameAndName() throws Exception {
+        startResolver();
+        assertEquals("127.0.0.1:25002", resolve("2"));
+        assertEquals("127.0.0.1:25001", resolve("notch"));
+        assertEquals("127.0.0.1:25001", resolve("my-survival-world"));
+        assertEquals("127.0.0.1:25002", resolve("Second"));
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> resolve("grumm"));
+        assertInstanceOf(IllegalStateException.class, RealmsDirectory.unwrap(exception.getCause()));
+    }
+
+    @Test
+    void prefersIdsAndOwnerNamesOverNames() throws Exception {
+        startResolver();
+        assertEquals("127.0.0.1:25001", resolve("12345")); // Also the name of the realm owned by Dinnerbone
+        assertEquals("127.0.0.1:25001", resolve("Notch")); // Also the name of the realm owned by jeb_
+        assertEquals("127.0.0.1:25003", resolve("jeb_"));
+    }
+
+    @Test
+    void requestsTheAvailabilityAndTheWorldListConcurrently() throws Exception {
+        fixture.setLatency(200);
+        startResolver();
+        resolve("notch");
+
+        assertEquals(1, fixture.getRequests("compatible"));
+        assertEquals(1, fixture.getRequests("worlds"));
+        assertEquals(2, fixture.getMaxActiveRequests());
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        fixture.failNextRequests(2); // The availability check and the world list
+        startResolver();
+        assertEquals("127.0.0.1:25001", resolve("notch"));
+
+        assertEquals(2, fixture.getRequests("compatible"));
+        assertEquals(2, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void retriesWhileTheRealmIsBooting() throws Exception {
+        fixture.bootNextJoins(1);
+        startResolver();
+        assertEquals("127.0.0.1:25001", resolve("notch"));
+
+        assertEquals(2, fixture.getRequests("join"));
+    }
+
+    @Test
+    void failsWithoutRetryingIfTheTermsOfServiceAreNotAccepted() {
+        fixture.setTosAccepted(false).setLatency(200); // The background load and the resolution share the slow request
+        startResolver();
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> resolve("notch"));
+
+        final RealmsRequestException cause = assertInstanceOf(RealmsRequestException.class, RealmsDirectory.unwrap(exception.getCause()));
+        assertEquals(RealmsRequestException.TOS_NOT_ACCEPTED, cause.getErrorCode());
+        assertEquals(1, fixture.getRequests("worlds"));
+    }
+
+    @Test
+    void reresolvesAFailedAddress() throws Exception {
+        startResolver();
+        final SocketAddress address = RealmsResolver.getAddress().get(30, TimeUnit.SECONDS);
+        assertNull(RealmsResolver.reresolve(AddressUtil.parse("127.0.0.1:25999", VERSION)));
+
+        assertEquals(address, RealmsResolver.reresolve(address).get(30, TimeUnit.SECONDS));
+        assertEquals(2, fixture.getRequests("join"));
+    }
+
+    @Test
+    void parsesTheSelectorBeforeTheLastMarker() {
+        assertEquals("notch", RealmsResolver.parseSelector("Notch.realms.proxy.example.com"));
+        assertEquals("my.realms", RealmsResolver.parseSelector("my.realms.realms.proxy.example.com"));
+        assertNull(RealmsResolver.parseSelector("play.example.com"));
+        assertNull(RealmsResolver.parseSelector(".realms.example.com"));
+    }
+
+}
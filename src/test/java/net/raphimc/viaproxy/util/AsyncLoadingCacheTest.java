@@ -0,0 +1,102 @@
+/*
+ * This file is part of ViaProxy - https://github.com/RaphiMC/ViaProxy
+ * Copyright (C) 2021-2024 RK_01/RaphiMC and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.raphimc.viaproxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLoadingCacheTest {
+
+    private final List<CompletableFuture<String>> loads = new ArrayList<>();
+
+    private AsyncLoadingCache<String, String> createCache(final long refreshAfterMillis) {
+        return new AsyncLoadingCache<>(key -> {
+            final CompletableFuture<String> future = new CompletableFuture<>();
+            synchronized (this.loads) {
+                this.loads.add(future);
+            }
+            return future;
+        }, refreshAfterMillis, TimeUnit.MINUTES.toMillis(10), 16);
+    }
+
+    @Test
+    void concurrentGetsShareTheLoad() {
+        final AsyncLoadingCache<String, String> cache = this.createCache(TimeUnit.MINUTES.toMillis(1));
+        final CompletableFuture<String> first = cache.get("key");
+        final CompletableFuture<String> second = cache.get("key");
+
+        assertSame(first, second);
+        assertEquals(1, this.loads.size());
+        this.loads.get(0).complete("value");
+        assertEquals("value", second.join());
+        assertEquals("value", cache.getIfPresent("key"));
+    }
+
+    @Test
+    void concurrentRefreshesShareTheLoad() {
+        final AsyncLoadingCache<String, String> cache = this.createCache(TimeUnit.MINUTES.toMillis(1));
+        cache.get("key");
+        this.loads.get(0).complete("old");
+
+        final CompletableFuture<String> first = cache.refresh("key");
+        final CompletableFuture<String> second = cache.refresh("key");
+        assertSame(first, second);
+        assertEquals(2, this.loads.size());
+        assertEquals("old", cache.get("key").join()); // The current value is served until the refresh is done
+
+        this.loads.get(1).complete("new");
+        assertEquals("new", first.join());
+        assertEquals("new", cache.get("key").join());
+        assertEquals(2, this.loads.size());
+    }
+
+    @Test
+    void staleGetsTriggerASingleBackgroundRefresh() throws InterruptedException {
+        final AsyncLoadingCache<String, String> cache = this.createCache(1);
+        cache.get("key");
+        this.loads.get(0).complete("old");
+        Thread.sleep(10);
+
+        assertEquals("old", cache.get("key").join());
+        assertEquals("old", cache.get("key").join());
+        assertEquals(2, this.loads.size());
+
+        this.loads.get(1).complete("new");
+        assertEquals("new", cache.getIfPresent("key"));
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        final AsyncLoadingCache<String, String> cache = this.createCache(TimeUnit.MINUTES.toMillis(1));
+        final CompletableFuture<String> failed = cache.get("key");
+        this.loads.get(0).completeExceptionally(new IOException("Connection reset"));
+        assertTrue(failed.isCompletedExceptionally());
+
+        final CompletableFuture<String> retried = cache.get("key");
+        assertNotSame(failed, retried);
+        assertEquals(2, this.loads.size());
+    }
+
+}